@@ -0,0 +1,381 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.codec;
+
+import fir.needle.joint.io.ByteArea;
+import fir.needle.web.server.json.JsonListener;
+
+final class CborReader implements ValueReader {
+    private static final int DEFAULT_MAX_DEPTH = 256;
+    private static final int DEFAULT_MAX_TOKEN_LENGTH = 1024 * 1024;
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+    private static final int FALSE = 20;
+    private static final int TRUE = 21;
+    private static final int NULL = 22;
+    private static final int UNDEFINED = 23;
+    private static final int HALF_FLOAT = 25;
+    private static final int FLOAT = 26;
+    private static final int DOUBLE = 27;
+    private static final int INDEFINITE = 31;
+    private static final long UNBOUNDED = -1;
+
+    private enum State {
+        HEADER, ARGUMENT, TEXT, DONE
+    }
+
+    private final JsonListener listener;
+    private final boolean[] isMap = new boolean[DEFAULT_MAX_DEPTH];
+    private final boolean[] isKeyExpected = new boolean[DEFAULT_MAX_DEPTH];
+    private final long[] remainingItems = new long[DEFAULT_MAX_DEPTH];
+    private final StringBuilder token = new StringBuilder();
+
+    private State state = State.HEADER;
+    private int depth;
+    private int major;
+    private int additional;
+    private int argumentBytes;
+    private long argument;
+    private long remainingTextBytes;
+    private boolean isInTextChunks;
+    private boolean isText;
+    private int pendingUtf8Bytes;
+    private int codePoint;
+    private long position;
+
+    CborReader(final JsonListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void feed(final ByteArea area, final long startIndex, final long length) {
+        for (long i = startIndex; i < startIndex + length; i++) {
+            consume(area.getByte(i) & 0xFF);
+        }
+    }
+
+    @Override
+    public void end() {
+        if (state != State.DONE) {
+            fail("Unexpected end of the document");
+        }
+
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        state = State.HEADER;
+        depth = 0;
+        isInTextChunks = false;
+        pendingUtf8Bytes = 0;
+        token.setLength(0);
+        position = 0;
+    }
+
+    private void consume(final int b) {
+        position++;
+
+        switch (state) {
+            case HEADER:
+                major = b >>> 5;
+                additional = b & 0x1F;
+                argument = 0;
+
+                if (additional < 24) {
+                    argument = additional;
+                    onItem();
+                } else if (additional <= DOUBLE) {
+                    argumentBytes = 1 << additional - 24;
+                    state = State.ARGUMENT;
+                } else if (additional == INDEFINITE) {
+                    onItem();
+                } else {
+                    fail("Reserved additional information " + additional);
+                }
+                break;
+            case ARGUMENT:
+                argument = argument << 8 | b;
+                if (--argumentBytes == 0) {
+                    state = State.HEADER;
+                    onItem();
+                }
+                break;
+            case TEXT:
+                consumeTextByte(b);
+                if (--remainingTextBytes == 0) {
+                    state = State.HEADER;
+                    if (!isInTextChunks) {
+                        finishText();
+                    }
+                }
+                break;
+            default:
+                fail("Unexpected data after the end of the document");
+        }
+    }
+
+    private void onItem() {
+        if (isInTextChunks) {
+            if (major == MAJOR_SIMPLE && additional == INDEFINITE) {
+                isInTextChunks = false;
+                finishText();
+            } else if (major == MAJOR_TEXT && additional != INDEFINITE) {
+                startText();
+            } else {
+                fail("Unexpected item inside an indefinite-length text string");
+            }
+            return;
+        }
+
+        if (major == MAJOR_SIMPLE && additional == INDEFINITE) {
+            if (depth == 0 || remainingItems[depth - 1] != UNBOUNDED) {
+                fail("Unexpected break");
+            }
+
+            if (isMap[depth - 1] && !isKeyExpected[depth - 1]) {
+                fail("Map is missing a value");
+            }
+
+            finishContainer();
+            return;
+        }
+
+        if (major == MAJOR_TAG) {
+            return;
+        }
+
+        final boolean isKey = depth > 0 && isMap[depth - 1] && isKeyExpected[depth - 1];
+        if (isKey && major != MAJOR_TEXT) {
+            fail("Only text string map keys are supported");
+        }
+
+        switch (major) {
+            case MAJOR_UNSIGNED:
+                token.setLength(0);
+                if (argument < 0) {
+                    token.append(Long.toUnsignedString(argument));
+                } else {
+                    token.append(argument);
+                }
+                listener.onNumber(token);
+                afterItem();
+                break;
+            case MAJOR_NEGATIVE:
+                if (argument < 0) {
+                    fail("Negative integer is out of range");
+                }
+                token.setLength(0);
+                token.append(-1 - argument);
+                listener.onNumber(token);
+                afterItem();
+                break;
+            case MAJOR_BYTES:
+                fail("Byte strings are not supported");
+                break;
+            case MAJOR_TEXT:
+                token.setLength(0);
+                isText = !isKey;
+                if (additional == INDEFINITE) {
+                    isInTextChunks = true;
+                } else {
+                    startText();
+                }
+                break;
+            case MAJOR_ARRAY:
+                push(false, additional == INDEFINITE ? UNBOUNDED : argument);
+                listener.onArrayStarted();
+                finishContainerIfEmpty();
+                break;
+            case MAJOR_MAP:
+                push(true, additional == INDEFINITE ? UNBOUNDED : argument * 2);
+                listener.onObjectStarted();
+                finishContainerIfEmpty();
+                break;
+            default:
+                onSimple();
+        }
+    }
+
+    private void onSimple() {
+        switch (additional) {
+            case FALSE:
+                listener.onBoolean(false);
+                break;
+            case TRUE:
+                listener.onBoolean(true);
+                break;
+            case NULL:
+            case UNDEFINED:
+                listener.onNull();
+                break;
+            case HALF_FLOAT:
+                onNumber(halfToFloat((int) argument));
+                break;
+            case FLOAT:
+                onNumber(Float.intBitsToFloat((int) argument));
+                break;
+            case DOUBLE:
+                onNumber(Double.longBitsToDouble(argument));
+                break;
+            default:
+                fail("Unsupported simple value " + additional);
+        }
+
+        afterItem();
+    }
+
+    private void onNumber(final double value) {
+        token.setLength(0);
+        token.append(value);
+        listener.onNumber(token);
+    }
+
+    private void startText() {
+        if (argument < 0 || token.length() + argument > DEFAULT_MAX_TOKEN_LENGTH) {
+            fail("Text string exceeds " + DEFAULT_MAX_TOKEN_LENGTH + " bytes");
+        }
+
+        remainingTextBytes = argument;
+        if (remainingTextBytes > 0) {
+            state = State.TEXT;
+        } else if (!isInTextChunks) {
+            finishText();
+        }
+    }
+
+    private void consumeTextByte(final int b) {
+        if (pendingUtf8Bytes == 0) {
+            if (b < 0x80) {
+                token.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                codePoint = b & 0x1F;
+                pendingUtf8Bytes = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                codePoint = b & 0x0F;
+                pendingUtf8Bytes = 2;
+            } else if ((b & 0xF8) == 0xF0) {
+                codePoint = b & 0x07;
+                pendingUtf8Bytes = 3;
+            } else {
+                fail("Malformed UTF-8 sequence");
+            }
+            return;
+        }
+
+        if ((b & 0xC0) != 0x80) {
+            fail("Malformed UTF-8 sequence");
+        }
+
+        codePoint = codePoint << 6 | b & 0x3F;
+        if (--pendingUtf8Bytes == 0) {
+            token.appendCodePoint(codePoint);
+        }
+    }
+
+    private void finishText() {
+        if (pendingUtf8Bytes != 0) {
+            fail("Truncated UTF-8 sequence");
+        }
+
+        if (isText) {
+            listener.onString(token);
+        } else {
+            listener.onFieldName(token);
+        }
+
+        afterItem();
+    }
+
+    private void push(final boolean map, final long items) {
+        if (depth == isMap.length) {
+            fail("Maximum nesting depth of " + isMap.length + " exceeded");
+        }
+
+        isMap[depth] = map;
+        isKeyExpected[depth] = map;
+        remainingItems[depth] = items;
+        depth++;
+    }
+
+    private void finishContainerIfEmpty() {
+        if (remainingItems[depth - 1] == 0) {
+            finishContainer();
+        }
+    }
+
+    private void finishContainer() {
+        depth--;
+
+        if (isMap[depth]) {
+            listener.onObjectFinished();
+        } else {
+            listener.onArrayFinished();
+        }
+
+        afterItem();
+    }
+
+    private void afterItem() {
+        if (depth == 0) {
+            state = State.DONE;
+            return;
+        }
+
+        final int level = depth - 1;
+        if (isMap[level]) {
+            isKeyExpected[level] = !isKeyExpected[level];
+        }
+
+        if (remainingItems[level] != UNBOUNDED && --remainingItems[level] == 0) {
+            finishContainer();
+        }
+    }
+
+    private static float halfToFloat(final int half) {
+        final int exponent = half >> 10 & 0x1F;
+        final int mantissa = half & 0x3FF;
+        final float magnitude;
+
+        if (exponent == 0) {
+            magnitude = mantissa * (float) Math.pow(2, -24);
+        } else if (exponent == 0x1F) {
+            magnitude = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        } else {
+            magnitude = (mantissa + 1024) * (float) Math.pow(2, exponent - 25);
+        }
+
+        return (half & 0x8000) == 0 ? magnitude : -magnitude;
+    }
+
+    private void fail(final String message) {
+        throw new IllegalArgumentException(message + " at position " + position);
+    }
+}
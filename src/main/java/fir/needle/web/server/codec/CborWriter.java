@@ -0,0 +1,260 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.codec;
+
+import fir.needle.joint.io.ByteAppendable;
+
+final class CborWriter implements ValueWriter {
+    private static final int DEFAULT_MAX_DEPTH = 256;
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_TEXT = 3;
+    private static final int INDEFINITE_ARRAY = 0x9F;
+    private static final int INDEFINITE_MAP = 0xBF;
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int DOUBLE = 0xFB;
+    private static final int BREAK = 0xFF;
+
+    private final boolean[] isObject = new boolean[DEFAULT_MAX_DEPTH];
+
+    private ByteAppendable out;
+    private int depth;
+    private boolean isNameWritten;
+    private int length;
+
+    @Override
+    public ValueWriter wrap(final ByteAppendable out) {
+        this.out = out;
+        this.depth = 0;
+        this.isNameWritten = false;
+        this.length = 0;
+        return this;
+    }
+
+    @Override
+    public ValueWriter measure() {
+        return wrap(null);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public ValueWriter startObject() {
+        beforeValue();
+        push(true);
+        write(INDEFINITE_MAP);
+        return this;
+    }
+
+    @Override
+    public ValueWriter endObject() {
+        pop(true);
+        write(BREAK);
+        return this;
+    }
+
+    @Override
+    public ValueWriter startArray() {
+        beforeValue();
+        push(false);
+        write(INDEFINITE_ARRAY);
+        return this;
+    }
+
+    @Override
+    public ValueWriter endArray() {
+        pop(false);
+        write(BREAK);
+        return this;
+    }
+
+    @Override
+    public ValueWriter name(final CharSequence name) {
+        if (depth == 0 || !isObject[depth - 1] || isNameWritten) {
+            throw new IllegalStateException("Field name is allowed only inside an object before a value!");
+        }
+
+        writeText(name);
+        isNameWritten = true;
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final CharSequence value) {
+        if (value == null) {
+            return nullValue();
+        }
+
+        beforeValue();
+        writeText(value);
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final long value) {
+        beforeValue();
+
+        if (value >= 0) {
+            writeHeader(MAJOR_UNSIGNED, value);
+        } else {
+            writeHeader(MAJOR_NEGATIVE, -1 - value);
+        }
+
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final double value) {
+        if (value == (long) value && !(value == 0 && 1 / value < 0)) {
+            return value((long) value);
+        }
+
+        beforeValue();
+        write(DOUBLE);
+        writeBytes(Double.doubleToLongBits(value), 8);
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final boolean value) {
+        beforeValue();
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public ValueWriter nullValue() {
+        beforeValue();
+        write(NULL);
+        return this;
+    }
+
+    private void beforeValue() {
+        if (depth == 0 || !isObject[depth - 1]) {
+            return;
+        }
+
+        if (!isNameWritten) {
+            throw new IllegalStateException("Field name must be written before a value inside an object!");
+        }
+
+        isNameWritten = false;
+    }
+
+    private void push(final boolean object) {
+        if (depth == isObject.length) {
+            throw new IllegalStateException("Maximum nesting depth of " + isObject.length + " exceeded!");
+        }
+
+        isObject[depth++] = object;
+    }
+
+    private void pop(final boolean object) {
+        if (depth == 0 || isObject[depth - 1] != object || isNameWritten) {
+            throw new IllegalStateException("Unbalanced " + (object ? "object" : "array") + " end!");
+        }
+
+        depth--;
+    }
+
+    private void writeText(final CharSequence value) {
+        long encodedLength = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                encodedLength += 1;
+            } else if (c < 0x800) {
+                encodedLength += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                encodedLength += 4;
+                i++;
+            } else {
+                encodedLength += 3;
+            }
+        }
+
+        writeHeader(MAJOR_TEXT, encodedLength);
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                write(c);
+            } else if (c < 0x800) {
+                write(0xC0 | c >> 6);
+                write(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                write(0xF0 | codePoint >> 18);
+                write(0x80 | codePoint >> 12 & 0x3F);
+                write(0x80 | codePoint >> 6 & 0x3F);
+                write(0x80 | codePoint & 0x3F);
+            } else {
+                write(0xE0 | c >> 12);
+                write(0x80 | c >> 6 & 0x3F);
+                write(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private void writeHeader(final int major, final long argument) {
+        final int type = major << 5;
+
+        if (argument >= 0 && argument < 24) {
+            write(type | (int) argument);
+        } else if (argument >= 0 && argument <= 0xFF) {
+            write(type | 24);
+            writeBytes(argument, 1);
+        } else if (argument >= 0 && argument <= 0xFFFF) {
+            write(type | 25);
+            writeBytes(argument, 2);
+        } else if (argument >= 0 && argument <= 0xFFFFFFFFL) {
+            write(type | 26);
+            writeBytes(argument, 4);
+        } else {
+            write(type | 27);
+            writeBytes(argument, 8);
+        }
+    }
+
+    private void writeBytes(final long value, final int count) {
+        for (int shift = (count - 1) * 8; shift >= 0; shift -= 8) {
+            write((int) (value >>> shift));
+        }
+    }
+
+    private void write(final int b) {
+        length++;
+
+        if (out != null) {
+            out.appendByte((byte) b);
+        }
+    }
+}
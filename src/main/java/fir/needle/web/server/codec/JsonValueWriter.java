@@ -0,0 +1,125 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.codec;
+
+import fir.needle.joint.io.ByteAppendable;
+import fir.needle.joint.io.CharAppendable;
+import fir.needle.joint.io.CharArea;
+import fir.needle.web.server.json.JsonWriter;
+
+final class JsonValueWriter implements ValueWriter, CharAppendable {
+    private final JsonWriter writer = new JsonWriter();
+    private ByteAppendable out;
+
+    @Override
+    public ValueWriter wrap(final ByteAppendable out) {
+        this.out = out;
+        writer.wrap(this);
+        return this;
+    }
+
+    @Override
+    public ValueWriter measure() {
+        this.out = null;
+        writer.measure();
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return writer.length();
+    }
+
+    @Override
+    public ValueWriter startObject() {
+        writer.startObject();
+        return this;
+    }
+
+    @Override
+    public ValueWriter endObject() {
+        writer.endObject();
+        return this;
+    }
+
+    @Override
+    public ValueWriter startArray() {
+        writer.startArray();
+        return this;
+    }
+
+    @Override
+    public ValueWriter endArray() {
+        writer.endArray();
+        return this;
+    }
+
+    @Override
+    public ValueWriter name(final CharSequence name) {
+        writer.name(name);
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final CharSequence value) {
+        writer.value(value);
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final long value) {
+        writer.value(value);
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final double value) {
+        writer.value(value);
+        return this;
+    }
+
+    @Override
+    public ValueWriter value(final boolean value) {
+        writer.value(value);
+        return this;
+    }
+
+    @Override
+    public ValueWriter nullValue() {
+        writer.nullValue();
+        return this;
+    }
+
+    @Override
+    public void appendChar(final char toAppend) {
+        out.appendByte((byte) toAppend);
+    }
+
+    @Override
+    public void appendArea(final CharArea area, final long startIndex, final long length) {
+        for (long i = startIndex; i < startIndex + length; i++) {
+            appendChar(area.getChar(i));
+        }
+    }
+}
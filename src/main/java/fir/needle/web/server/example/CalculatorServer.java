@@ -26,16 +26,23 @@ package fir.needle.web.server.example;
 
 import fir.needle.joint.io.CharAppendable;
 import fir.needle.joint.io.CharArea;
+import fir.needle.joint.logging.Logger;
 import fir.needle.joint.logging.SystemLogger;
 import fir.needle.web.server.http.HttpRequestListener;
 import fir.needle.web.server.http.netty.NettyHttpServer;
+import fir.needle.web.server.http.rest.PrometheusMetricsListener;
 import fir.needle.web.server.http.rest.RestListener;
 import fir.needle.web.server.http.rest.RestOutputMessage;
 import fir.needle.web.server.http.rest.RestResponse;
+import fir.needle.web.server.http.rest.RestResponseCache;
+import fir.needle.web.server.http.rest.RestRouteOptions;
 import fir.needle.web.server.http.rest.RestRouter;
+import fir.needle.web.server.logging.AsyncLogger;
+import fir.needle.web.server.metrics.ServerMetrics;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 public class CalculatorServer {
@@ -45,15 +52,30 @@ public class CalculatorServer {
             port = Integer.parseInt(args[0]);
         }
 
+        final Logger logger = AsyncLogger.builder(SystemLogger.trace()).build();
+        final ServerMetrics metrics = new ServerMetrics();
+
+        final RestRouteOptions cacheable = RestRouteOptions.builder()
+            .withCache(RestResponseCache.builder()
+                .withTimeToLive(10, TimeUnit.MINUTES)
+                .withMaximumSize(16 * 1024 * 1024)
+                .build())
+            .withSingleFlight()
+            .build();
+
         NettyHttpServer.builder()
             .withWorkerThreadsAmount(10)
-            .withLogger(SystemLogger.trace())
+            .withLogger(logger)
+            .withMetrics(metrics)
             .build(port, new HttpRequestListenerSupplier(
                 RestRouter.builder()
-                    .withPair("/arithmetic/sum/{firstSummand}/{secondSummand}", Adder::new)
-                    .withPair("/arithmetic/mul/{multiplicand}/{multiplier}", Multiplier::new)
-                    .withPair("/arithmetic/div/{dividend}/{divider}", Divider::new)
-                    .withPair("/arithmetic/sub/{minuend}/{subtrahend}", Substractor::new))
+                    .withLogger(logger)
+                    .withMetrics(metrics)
+                    .withPair("/metrics", () -> new PrometheusMetricsListener(metrics))
+                    .withPair("/arithmetic/sum/{firstSummand}/{secondSummand}", Adder::new, cacheable)
+                    .withPair("/arithmetic/mul/{multiplicand}/{multiplier}", Multiplier::new, cacheable)
+                    .withPair("/arithmetic/div/{dividend}/{divider}", Divider::new, cacheable)
+                    .withPair("/arithmetic/sub/{minuend}/{subtrahend}", Substractor::new, cacheable))
             )
             .run();
     }
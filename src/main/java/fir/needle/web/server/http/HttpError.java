@@ -33,6 +33,8 @@ public interface HttpError {
 
     HttpOutputMessage notFound();
 
+    HttpOutputMessage serviceUnavailable(int retryAfterSeconds);
+
     HttpOutputMessage internalServerError(CharSequence message);
 
     HttpOutputMessage internalServerError(Throwable throwable);
@@ -40,7 +40,7 @@ public interface HttpRequestListener {
 
     void onBodyFinished();
 
-    void onPartStarted();
+    void onPartStarted(CharSequence name, CharSequence fileName, CharSequence contentType);
 
     void onPartContent(ByteArea buffer, long startIndex, long length);
 
@@ -23,6 +23,8 @@
  */
 package fir.needle.web.server.http;
 
+import java.util.concurrent.Executor;
+
 public interface HttpResponse {
 
     HttpSuccess success();
@@ -30,4 +32,18 @@ public interface HttpResponse {
     HttpError error();
 
     HttpRedirect redirect();
+
+    boolean isRecordable();
+
+    boolean isWarmUp();
+
+    void startRecording();
+
+    HttpResponseSnapshot takeSnapshot();
+
+    void write(HttpResponseSnapshot snapshot);
+
+    Executor executor();
+
+    int statusCode();
 }
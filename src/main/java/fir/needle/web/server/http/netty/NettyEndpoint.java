@@ -0,0 +1,85 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import fir.needle.joint.colleclions.ConcurrentObjectPool;
+import fir.needle.joint.colleclions.Pool;
+import fir.needle.web.server.http.HttpRequestListener;
+import fir.needle.web.server.metrics.ServerMetrics;
+import io.netty.channel.unix.DomainSocketAddress;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.function.Supplier;
+
+final class NettyEndpoint {
+    private final SocketAddress address;
+    private final Supplier<HttpRequestListener> supplier;
+    private final boolean isTls;
+    private final Pool<HttpRequestListener> listenerPool;
+
+    NettyEndpoint(final SocketAddress address, final Supplier<HttpRequestListener> supplier, final boolean isTls) {
+        this(address, supplier, isTls, null);
+    }
+
+    private NettyEndpoint(final SocketAddress address, final Supplier<HttpRequestListener> supplier,
+            final boolean isTls, final Pool<HttpRequestListener> listenerPool) {
+        if (address == null || supplier == null) {
+            throw new IllegalArgumentException("Endpoint address and listener supplier must not be null!");
+        }
+        this.address = address;
+        this.supplier = supplier;
+        this.isTls = isTls;
+        this.listenerPool = listenerPool;
+    }
+
+    NettyEndpoint pooled(final ServerMetrics metrics) {
+        return new NettyEndpoint(address, supplier, isTls, new ConcurrentObjectPool<>(
+                metrics == null ? supplier : metrics.listenersPool().instrument(supplier)));
+    }
+
+    SocketAddress address() {
+        return address;
+    }
+
+    SocketAddress address(final int port) {
+        return new InetSocketAddress(((InetSocketAddress) address).getAddress(), port);
+    }
+
+    boolean isTls() {
+        return isTls;
+    }
+
+    boolean isDomainSocket() {
+        return address instanceof DomainSocketAddress;
+    }
+
+    String path() {
+        return ((DomainSocketAddress) address).path();
+    }
+
+    Pool<HttpRequestListener> listenerPool() {
+        return listenerPool;
+    }
+}
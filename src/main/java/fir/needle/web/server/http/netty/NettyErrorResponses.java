@@ -0,0 +1,197 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import fir.needle.web.server.logging.Loggers;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+final class NettyErrorResponses {
+    private static final int MIN_STATUS_CODE = 100;
+    private static final int MAX_STATUS_CODE = 599;
+    private static final int[] PRECOMPUTED_CODES = {400, 401, 403, 404, 405, 408, 413, 429, 500, 503};
+    private static final int[] RETRY_CODES = {429, 503};
+    private static final int MAX_CACHED_RETRY_AFTER = 60;
+    private static final String EOL = "\n";
+    private static final String MESSAGE_NAME = "Message:";
+    private static final String EXCEPTION_NAME = "Exception:";
+
+    private final ErrorFormat format;
+    private final boolean isStackTraceEnabled;
+    private final AtomicReferenceArray<ByteBuf> responses =
+            new AtomicReferenceArray<>(MAX_STATUS_CODE - MIN_STATUS_CODE + 1);
+    private final AtomicReferenceArray<ByteBuf> retryResponses =
+            new AtomicReferenceArray<>(RETRY_CODES.length * (MAX_CACHED_RETRY_AFTER + 1));
+
+    NettyErrorResponses(final ErrorFormat format, final boolean isStackTraceEnabled) {
+        this.format = format;
+        this.isStackTraceEnabled = isStackTraceEnabled;
+
+        for (final int code : PRECOMPUTED_CODES) {
+            response(HttpResponseStatus.valueOf(code));
+        }
+    }
+
+    boolean isStackTraceEnabled() {
+        return isStackTraceEnabled;
+    }
+
+    String contentType() {
+        return format.contentType();
+    }
+
+    ByteBuf response(final HttpResponseStatus status) {
+        final int index = status.code() - MIN_STATUS_CODE;
+        if (index < 0 || index >= responses.length()) {
+            return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(encode(status, -1)));
+        }
+
+        final ByteBuf existing = responses.get(index);
+        return existing != null ? existing : cache(responses, index, encode(status, -1));
+    }
+
+    ByteBuf response(final HttpResponseStatus status, final int retryAfterSeconds) {
+        if (retryAfterSeconds < 0) {
+            return response(status);
+        }
+
+        final int codeIndex = retryCodeIndex(status.code());
+        if (codeIndex < 0) {
+            return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(encode(status, retryAfterSeconds)));
+        }
+
+        final int cappedRetryAfter = Math.min(retryAfterSeconds, MAX_CACHED_RETRY_AFTER);
+        final int index = codeIndex * (MAX_CACHED_RETRY_AFTER + 1) + cappedRetryAfter;
+        final ByteBuf existing = retryResponses.get(index);
+        return existing != null ? existing : cache(retryResponses, index, encode(status, cappedRetryAfter));
+    }
+
+    private static ByteBuf cache(final AtomicReferenceArray<ByteBuf> cache, final int index, final byte[] response) {
+        final ByteBuf created = Unpooled.directBuffer(response.length);
+        created.writeBytes(response);
+
+        if (!cache.compareAndSet(index, null, Unpooled.unreleasableBuffer(created.asReadOnly()))) {
+            created.release();
+        }
+
+        return cache.get(index);
+    }
+
+    private static int retryCodeIndex(final int code) {
+        for (int i = 0; i < RETRY_CODES.length; i++) {
+            if (RETRY_CODES[i] == code) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    byte[] body(final HttpResponseStatus status, final CharSequence message, final Throwable throwable) {
+        final String exception = throwable != null && isStackTraceEnabled ? Loggers.stackTraceOf(throwable) : null;
+        final StringBuilder result = new StringBuilder();
+
+        if (format == ErrorFormat.JSON) {
+            result.append("{\"status\":").append(status.code()).append(",\"error\":");
+            appendJsonString(result, status.reasonPhrase());
+
+            if (message != null) {
+                result.append(",\"message\":");
+                appendJsonString(result, message);
+            }
+
+            if (exception != null) {
+                result.append(",\"exception\":");
+                appendJsonString(result, exception);
+            }
+
+            result.append('}');
+        } else {
+            if (message != null) {
+                result.append(MESSAGE_NAME).append(EOL).append(message);
+            } else {
+                result.append(status.reasonPhrase());
+            }
+
+            if (exception != null) {
+                result.append(EOL).append(EXCEPTION_NAME).append(EOL).append(exception);
+            }
+        }
+
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(final HttpResponseStatus status, final int retryAfterSeconds) {
+        final byte[] body = body(status, null, null);
+        final String head = HttpVersion.HTTP_1_1 + " " + status + EOL +
+                "Connection: close" + EOL +
+                (retryAfterSeconds >= 0 ? "Retry-After: " + retryAfterSeconds + EOL : "") +
+                "Content-Type: " + format.contentType() + EOL +
+                "Content-Length: " + body.length + EOL + EOL;
+        final byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+        final byte[] result = Arrays.copyOf(headBytes, headBytes.length + body.length);
+        System.arraycopy(body, 0, result, headBytes.length, body.length);
+
+        return result;
+    }
+
+    private static void appendJsonString(final StringBuilder result, final CharSequence value) {
+        result.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+
+        result.append('"');
+    }
+}
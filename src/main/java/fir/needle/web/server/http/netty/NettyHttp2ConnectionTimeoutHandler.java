@@ -0,0 +1,111 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.TimeUnit;
+
+final class NettyHttp2ConnectionTimeoutHandler extends ChannelInboundHandlerAdapter implements TimerTask {
+    private final Timer timer;
+    private final long idleTimeoutNanos;
+
+    private ChannelHandlerContext context;
+    private Timeout timeout;
+    private int activeStreams;
+    private boolean isClosed;
+
+    NettyHttp2ConnectionTimeoutHandler(final Timer timer, final long idleTimeoutNanos) {
+        this.timer = timer;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) {
+        context = ctx;
+
+        if (ctx.channel().isActive()) {
+            scheduleIfIdle();
+        }
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) {
+        isClosed = true;
+        cancel();
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        scheduleIfIdle();
+
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        isClosed = true;
+        cancel();
+
+        super.channelInactive(ctx);
+    }
+
+    void onStreamOpened() {
+        activeStreams++;
+        cancel();
+    }
+
+    void onStreamClosed() {
+        activeStreams--;
+        scheduleIfIdle();
+    }
+
+    @Override
+    public void run(final Timeout expired) {
+        context.executor().execute(() -> {
+            if (expired == timeout) {
+                timeout = null;
+                isClosed = true;
+                context.close();
+            }
+        });
+    }
+
+    private void scheduleIfIdle() {
+        if (activeStreams == 0 && timeout == null && !isClosed && context != null) {
+            timeout = timer.newTimeout(this, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void cancel() {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2StreamFrame;
+import io.netty.util.AsciiString;
+
+final class NettyHttp2ResponseAdapter extends ChannelOutboundHandlerAdapter {
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte SPACE = ' ';
+    private static final byte COLON = ':';
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+
+    private ByteBuf head;
+    private boolean isHeadWritten;
+    private boolean isEnded;
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+            throws Exception {
+        if (msg instanceof Http2StreamFrame) {
+            isHeadWritten = true;
+            isEnded |= msg instanceof Http2HeadersFrame ? ((Http2HeadersFrame) msg).isEndStream() :
+                    msg instanceof Http2DataFrame && ((Http2DataFrame) msg).isEndStream();
+            ctx.write(msg, promise);
+            return;
+        }
+
+        if (!(msg instanceof ByteBuf) || isEnded) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final ByteBuf buf = (ByteBuf) msg;
+
+        if (isHeadWritten) {
+            ctx.write(new DefaultHttp2DataFrame(buf), promise);
+            return;
+        }
+
+        if (head == null) {
+            head = ctx.alloc().buffer();
+        }
+
+        head.writeBytes(buf);
+        buf.release();
+
+        final int bodyStart = bodyStart();
+        if (bodyStart < 0) {
+            if (head.readableBytes() > MAX_HEAD_SIZE) {
+                releaseHead();
+                promise.setFailure(new IllegalStateException("Response head exceeds " + MAX_HEAD_SIZE + " bytes"));
+                return;
+            }
+
+            promise.setSuccess();
+            return;
+        }
+
+        isHeadWritten = true;
+
+        if (bodyStart < head.writerIndex()) {
+            ctx.write(new DefaultHttp2HeadersFrame(parseHead(bodyStart)), ctx.newPromise());
+            ctx.write(new DefaultHttp2DataFrame(head.retainedSlice(bodyStart, head.writerIndex() - bodyStart)),
+                    promise);
+        } else {
+            ctx.write(new DefaultHttp2HeadersFrame(parseHead(bodyStart)), promise);
+        }
+
+        releaseHead();
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        if (isEnded || !isHeadWritten) {
+            releaseHead();
+            ctx.close(promise);
+            return;
+        }
+
+        isEnded = true;
+        ctx.writeAndFlush(new DefaultHttp2DataFrame(true)).addListener(future -> ctx.close(promise));
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) {
+        releaseHead();
+    }
+
+    static boolean isConnectionSpecific(final AsciiString lowerCaseName) {
+        return lowerCaseName.contentEquals(HttpHeaderNames.CONNECTION) ||
+                lowerCaseName.contentEquals(HttpHeaderNames.TRANSFER_ENCODING) ||
+                lowerCaseName.contentEquals(HttpHeaderNames.KEEP_ALIVE) ||
+                lowerCaseName.contentEquals(HttpHeaderNames.PROXY_CONNECTION) ||
+                lowerCaseName.contentEquals(HttpHeaderNames.UPGRADE);
+    }
+
+    private int bodyStart() {
+        for (int i = head.readerIndex(); i < head.writerIndex(); i++) {
+            if (head.getByte(i) != LF) {
+                continue;
+            }
+
+            if (i + 1 < head.writerIndex() && head.getByte(i + 1) == LF) {
+                return i + 2;
+            }
+
+            if (i + 2 < head.writerIndex() && head.getByte(i + 1) == CR && head.getByte(i + 2) == LF) {
+                return i + 3;
+            }
+        }
+
+        return -1;
+    }
+
+    private Http2Headers parseHead(final int bodyStart) {
+        final byte[] bytes = ByteBufUtil.getBytes(head, head.readerIndex(), bodyStart - head.readerIndex());
+        final Http2Headers headers = new DefaultHttp2Headers();
+
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != LF) {
+                lineEnd++;
+            }
+
+            final int nextLineStart = lineEnd + 1;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == CR) {
+                lineEnd--;
+            }
+
+            if (lineStart == 0) {
+                addStatus(headers, bytes, lineEnd);
+            } else {
+                addHeader(headers, bytes, lineStart, lineEnd);
+            }
+
+            lineStart = nextLineStart;
+        }
+
+        return headers;
+    }
+
+    private static void addStatus(final Http2Headers headers, final byte[] bytes, final int lineEnd) {
+        final int codeStart = indexOf(bytes, 0, lineEnd, SPACE) + 1;
+        final int codeEnd = indexOf(bytes, codeStart, lineEnd, SPACE);
+
+        headers.status(new AsciiString(bytes, codeStart, (codeEnd < 0 ? lineEnd : codeEnd) - codeStart, false));
+    }
+
+    private static void addHeader(final Http2Headers headers, final byte[] bytes, final int lineStart,
+            final int lineEnd) {
+        final int colon = indexOf(bytes, lineStart, lineEnd, COLON);
+        if (colon <= lineStart) {
+            return;
+        }
+
+        final AsciiString name = new AsciiString(bytes, lineStart, trimEnd(bytes, lineStart, colon) - lineStart,
+                false).toLowerCase();
+        if (isConnectionSpecific(name)) {
+            return;
+        }
+
+        int valueStart = colon + 1;
+        while (valueStart < lineEnd && bytes[valueStart] == SPACE) {
+            valueStart++;
+        }
+
+        headers.add(name, new AsciiString(bytes, valueStart, trimEnd(bytes, valueStart, lineEnd) - valueStart, false));
+    }
+
+    private static int indexOf(final byte[] bytes, final int from, final int to, final byte value) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int trimEnd(final byte[] bytes, final int from, final int to) {
+        int end = to;
+        while (end > from && bytes[end - 1] == SPACE) {
+            end--;
+        }
+
+        return end;
+    }
+
+    private void releaseHead() {
+        if (head != null) {
+            head.release();
+            head = null;
+        }
+    }
+}
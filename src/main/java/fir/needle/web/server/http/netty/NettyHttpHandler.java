@@ -32,133 +32,350 @@ import fir.needle.web.server.http.HttpOutputMessage;
 import fir.needle.web.server.http.HttpRedirect;
 import fir.needle.web.server.http.HttpRequestListener;
 import fir.needle.web.server.http.HttpResponse;
+import fir.needle.web.server.http.HttpResponseSnapshot;
 import fir.needle.web.server.http.HttpSuccess;
+import fir.needle.web.server.limit.RateLimiter;
+import fir.needle.web.server.logging.Loggers;
+import fir.needle.web.server.metrics.ServerMetrics;
+import fir.needle.web.server.trace.RequestPhase;
+import fir.needle.web.server.trace.RequestTracer;
+import fir.needle.web.server.trace.TraceRing;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.codec.http.QueryStringDecoder;
-import io.netty.handler.codec.http.multipart.Attribute;
-import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
-import io.netty.handler.codec.http.multipart.DiskAttribute;
-import io.netty.handler.codec.http.multipart.DiskFileUpload;
-import io.netty.handler.codec.http.multipart.FileUpload;
-import io.netty.handler.codec.http.multipart.HttpDataFactory;
-import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
-import io.netty.handler.codec.http.multipart.InterfaceHttpData;
-
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.nio.charset.Charset;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.Executor;
 
 class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
-    private static final HttpDataFactory FACTORY = new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE);
-
-    static {
-        DiskFileUpload.deleteOnExitTemporaryFile = true;
-        DiskFileUpload.baseDirectory = null;
-        DiskAttribute.deleteOnExitTemporaryFile = true;
-        DiskAttribute.baseDirectory = null;
-    }
+    static final Object DRAIN_EVENT = new Object();
+    static final Object KEEP_ALIVE_EVENT = new Object();
+    private static final int MAX_PIPELINED_MESSAGES = 64;
+    private static final ByteBuf CONNECTION_CLOSE_LINE = Unpooled.unreleasableBuffer(
+            Unpooled.wrappedBuffer("Connection: close\n".getBytes(StandardCharsets.US_ASCII)).asReadOnly());
+    private static final byte[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e',
+        'f'};
 
     private HttpRequestListener listener;
-    private final HttpResponse response;
+    private final NettyHttpResponse response;
     private final Pool<HttpRequestListener> pool;
+    private Pool<HttpRequestListener> listenerPool;
+    private final NettyVirtualHosts virtualHosts;
 
     private boolean wasStarted;
     private boolean wasCommitted;
-    private HttpPostRequestDecoder postDecoder;
+    private boolean hasBody;
+    private boolean isMultipart;
+    private final NettyMultipartParser multipartParser;
+    private final NettyInputByteBuffer partArea = new NettyInputByteBuffer();
+    private final NettyInputByteBuffer bodyArea = new NettyInputByteBuffer();
+    private final NettyRequestUri requestUri = new NettyRequestUri();
     private ChannelHandlerContext context;
     private final Logger logger;
-
-    NettyHttpHandler(final Pool<HttpRequestListener> pool, final Logger logger) {
+    private final ServerMetrics metrics;
+    private long requestStartTime;
+    private long firstByteTime;
+    private final RequestTracer tracer;
+    private TraceRing traceRing;
+    private long traceId;
+    private ChannelFuture lastWriteFuture;
+    private final ArrayDeque<FlushTracer> flushTracers = new ArrayDeque<>();
+    private final NettyErrorResponses errorResponses;
+    private final RateLimiter rateLimiter;
+    private long clientKey;
+    private final boolean isKeepAliveEnabled;
+    private final boolean isHttp2Stream;
+    private final boolean isWarmUp;
+    private boolean isKeepAlive;
+    private boolean isInFlight;
+    private boolean isRequestRead;
+    private boolean isDraining;
+    private final ArrayDeque<HttpObject> pipelined = new ArrayDeque<>();
+    private boolean isReplaying;
+    private boolean isPipelineOverflowed;
+    private boolean isReadSuspended;
+
+    NettyHttpHandler(final Pool<HttpRequestListener> pool, final Logger logger, final ServerMetrics metrics,
+            final RequestTracer tracer, final NettyErrorResponses errorResponses,
+            final NettyMultipartOptions multipartOptions, final RateLimiter rateLimiter,
+            final boolean isKeepAliveEnabled, final boolean isHttp2Stream, final boolean isWarmUp,
+            final NettyVirtualHosts virtualHosts) {
         super();
         this.pool = pool;
+        this.virtualHosts = virtualHosts;
         this.response = new NettyHttpResponse();
         this.logger = logger;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.errorResponses = errorResponses;
+        this.rateLimiter = rateLimiter;
+        this.isKeepAliveEnabled = isKeepAliveEnabled;
+        this.isHttp2Stream = isHttp2Stream;
+        this.isWarmUp = isWarmUp;
+        this.multipartParser = new NettyMultipartParser(new NettyMultipartListener(), multipartOptions);
     }
 
     @Override
     protected void channelRead0(final ChannelHandlerContext ctx, final HttpObject msg) {
+        if (!isReplaying && (!pipelined.isEmpty() || isNextRequest(msg))) {
+            queuePipelined(ctx, msg);
+            return;
+        }
+
+        if (msg instanceof HttpRequest) {
+            final HttpRequest request = (HttpRequest) msg;
+
+            isInFlight = true;
+            isRequestRead = false;
+            wasCommitted = false;
+            isKeepAlive = isKeepAliveEnabled && !isDraining && request.protocolVersion().isKeepAliveDefault() &&
+                    HttpUtil.isKeepAlive(request) && !(isPipelineOverflowed && !hasPipelinedRequest());
+        }
+
         if (wasCommitted) {
+            finishIfLast(msg);
             return;
         }
 
         this.context = ctx;
 
+        if (traceRing != null) {
+            if (msg instanceof HttpRequest) {
+                traceId = traceRing.begin();
+            } else {
+                traceRing.activate(traceId);
+            }
+        }
+
         if (msg instanceof HttpRequest) {
             final HttpRequest request = (HttpRequest) msg;
-            final QueryStringDecoder queryStringDecoder = new QueryStringDecoder(request.uri());
+
+            if (metrics != null) {
+                requestStartTime = System.nanoTime();
+                firstByteTime = 0;
+            }
+
+            if (rateLimiter != null && isRateLimited(request)) {
+                finishIfLast(msg);
+                return;
+            }
+
+            if (virtualHosts != null) {
+                selectListener(virtualHosts.find(request.headers().get(HttpHeaderNames.HOST), pool));
+            }
+
+            requestUri.reset(request.uri());
 
             try {
                 if (!wasStarted) {
                     wasStarted = true;
                     try {
-                        listener.onRequestStarted(request.method().name(), queryStringDecoder.path(), response);
+                        listener.onRequestStarted(request.method().name(), requestUri.path(), response);
                     } catch (final Exception e) {
                         if (logger.isErrorEnabled()) {
-                            logger.error(getStackTrace(e));
+                            Loggers.error(logger, e);
                         }
                     }
+
+                    if (traceRing != null) {
+                        traceRing.mark(traceId, RequestPhase.REQUEST_STARTED);
+                    }
                 } else {
                     throw new IllegalStateException();
                 }
             } catch (final Exception e) {
                 if (logger.isErrorEnabled()) {
-                    logger.error(getStackTrace(e));
+                    Loggers.error(logger, e);
                 }
             }
 
             if (wasCommitted) {
+                finishIfLast(msg);
                 return;
             }
 
-            processParams(queryStringDecoder);
+            processParams();
             processHeaders(request);
 
             if (!request.method().equals(HttpMethod.GET)) {
-                createPostDecoder(request);
+                startBody(request);
             }
         }
 
         if (msg instanceof HttpContent) {
             final HttpContent chunk = (HttpContent) msg;
 
-            if (postDecoder != null) {
+            if (traceRing != null && chunk.content().isReadable()) {
+                traceRing.mark(traceId, RequestPhase.BODY_CHUNK);
+            }
+
+            if (isMultipart) {
+                multipartParser.offer(ctx.alloc(), chunk.content());
+            } else if (hasBody) {
                 processBody(chunk);
             }
 
             if (chunk instanceof LastHttpContent) {
-                if (postDecoder != null && !postDecoder.isMultipart()) {
+                if (isMultipart) {
+                    isMultipart = false;
+                    if (!wasCommitted) {
+                        multipartParser.finish();
+                    }
+                } else if (hasBody) {
+                    hasBody = false;
                     try {
                         listener.onBodyFinished();
                     } catch (final Exception e) {
                         if (logger.isErrorEnabled()) {
-                            logger.error(getStackTrace(e));
+                            Loggers.error(logger, e);
                         }
                     }
                 }
 
-                if (wasStarted) {
-                    wasStarted = false;
-                    try {
-                        listener.onRequestFinished();
-                    } catch (final Exception e) {
-                        if (logger.isErrorEnabled()) {
-                            logger.error(getStackTrace(e));
-                        }
-                    }
+                finishRequest();
+            }
+        }
+    }
+
+    private void finishIfLast(final HttpObject msg) {
+        if (msg instanceof LastHttpContent) {
+            hasBody = false;
+            isMultipart = false;
+            finishRequest();
+        }
+    }
+
+    private void finishRequest() {
+        if (wasStarted) {
+            wasStarted = false;
+            try {
+                listener.onRequestFinished();
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
+                }
+            }
+        }
+
+        requestUri.clear();
+        isRequestRead = true;
+
+        if (wasCommitted) {
+            completeExchange();
+        }
+    }
+
+    private void completeExchange() {
+        isInFlight = false;
+
+        if (!isKeepAlive) {
+            releasePipelined();
+            context.channel().close();
+            return;
+        }
+
+        if (isReplaying) {
+            return;
+        }
+
+        replayPipelined();
+
+        if (isReadSuspended && pipelined.isEmpty()) {
+            isReadSuspended = false;
+            context.channel().config().setAutoRead(true);
+        }
+
+        if (!isInFlight && isKeepAlive) {
+            context.pipeline().fireUserEventTriggered(KEEP_ALIVE_EVENT);
+        }
+    }
+
+    private boolean isNextRequest(final HttpObject msg) {
+        return isInFlight && (msg instanceof HttpRequest || isRequestRead);
+    }
+
+    private void queuePipelined(final ChannelHandlerContext ctx, final HttpObject msg) {
+        if (isPipelineOverflowed) {
+            return;
+        }
+
+        if (pipelined.size() == MAX_PIPELINED_MESSAGES) {
+            isPipelineOverflowed = true;
+
+            while (!pipelined.isEmpty() && !(pipelined.peekLast() instanceof LastHttpContent)) {
+                ReferenceCountUtil.release(pipelined.pollLast());
+            }
+
+            if (!hasPipelinedRequest()) {
+                isKeepAlive = false;
+            }
+            return;
+        }
+
+        if (!isReadSuspended) {
+            isReadSuspended = true;
+            ctx.channel().config().setAutoRead(false);
+        }
+
+        pipelined.offer((HttpObject) ReferenceCountUtil.retain(msg));
+    }
+
+    private boolean hasPipelinedRequest() {
+        for (final HttpObject crtMessage : pipelined) {
+            if (crtMessage instanceof HttpRequest) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void replayPipelined() {
+        isReplaying = true;
+
+        try {
+            while (!pipelined.isEmpty() && !isNextRequest(pipelined.peek())) {
+                final HttpObject msg = pipelined.poll();
+                try {
+                    channelRead0(context, msg);
+                } finally {
+                    ReferenceCountUtil.release(msg);
                 }
             }
+        } finally {
+            isReplaying = false;
+        }
+    }
+
+    private void releasePipelined() {
+        for (HttpObject msg = pipelined.poll(); msg != null; msg = pipelined.poll()) {
+            ReferenceCountUtil.release(msg);
         }
     }
 
@@ -166,18 +383,24 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
     public void channelActive(final ChannelHandlerContext ctx) throws Exception {
         super.channelActive(ctx);
 
-        System.out.println("Channel id: " + ctx.channel().id() + " " + ", socket: " + ctx.channel().remoteAddress());
+        if (tracer != null) {
+            traceRing = tracer.ring();
+        }
 
-        try {
-            listener = pool.borrow();
-        } catch (final Exception e) {
-            if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
-            }
+        if (rateLimiter != null) {
+            final SocketAddress address = ctx.channel().remoteAddress();
+            clientKey = address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null ?
+                    RateLimiter.keyOf(((InetSocketAddress) address).getAddress()) :
+                    0;
+        }
+
+        if (virtualHosts == null) {
+            borrowListener(pool);
         }
 
         if (logger.isTraceEnabled()) {
-            logger.trace("Channel is active " + listener + " by " + Thread.currentThread());
+            logger.trace("Channel is active " + listener + " for " + ctx.channel().remoteAddress() + " by " +
+                    Thread.currentThread());
         }
     }
 
@@ -187,31 +410,103 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
             logger.trace("Channel is been deactivated " + listener + " by " + Thread.currentThread());
         }
 
-        if (postDecoder != null) {
-            postDecoder.cleanFiles();
-        }
+        releaseResources();
+    }
 
-        if (wasStarted) {
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        releaseResources();
+    }
+
+    private void releaseResources() {
+        multipartParser.release();
+        releasePipelined();
+
+        if (wasStarted && listener != null) {
             wasStarted = false;
             try {
                 listener.onRequestFinished();
             } catch (final Exception e) {
                 if (logger.isErrorEnabled()) {
-                    logger.error(getStackTrace(e));
+                    Loggers.error(logger, e);
+                }
+            }
+        }
+
+        if (isInFlight && !wasCommitted && listener != null) {
+            try {
+                listener.onError(new ClosedChannelException());
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
                 }
             }
         }
 
+        response.releaseSnapshot();
+        releaseListener();
+    }
+
+    private void selectListener(final Pool<HttpRequestListener> hostPool) {
+        if (listener != null && listenerPool == hostPool) {
+            return;
+        }
+
+        releaseListener();
+        borrowListener(hostPool);
+    }
+
+    private void borrowListener(final Pool<HttpRequestListener> from) {
+        try {
+            final long borrowStartTime = metrics == null ? 0 : System.nanoTime();
+            listener = from.borrow();
+            listenerPool = from;
+
+            if (metrics != null) {
+                metrics.listenersPool().onBorrowed(System.nanoTime() - borrowStartTime);
+            }
+        } catch (final Exception e) {
+            if (logger.isErrorEnabled()) {
+                Loggers.error(logger, e);
+            }
+        }
+    }
+
+    private void releaseListener() {
+        if (listener == null) {
+            return;
+        }
+
         try {
-            pool.release(listener);
+            listenerPool.release(listener);
+
+            if (metrics != null) {
+                metrics.listenersPool().onReleased();
+            }
+
             listener = null;
         } catch (final Exception e) {
             if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+                Loggers.error(logger, e);
             }
         }
     }
 
+    @Override
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+        if (evt != DRAIN_EVENT) {
+            super.userEventTriggered(ctx, evt);
+            return;
+        }
+
+        isDraining = true;
+        isKeepAlive = false;
+
+        if (!isInFlight) {
+            ctx.channel().close();
+        }
+    }
+
     @Override
     public void channelReadComplete(final ChannelHandlerContext ctx) {
         ctx.flush();
@@ -224,7 +519,7 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
                 listener.onError(cause);
             } catch (final Exception e) {
                 if (logger.isErrorEnabled()) {
-                    logger.error(getStackTrace(e));
+                    Loggers.error(logger, e);
                 }
             }
 
@@ -233,7 +528,7 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
                 listener.onRequestFinished();
             } catch (final Exception e) {
                 if (logger.isErrorEnabled()) {
-                    logger.error(getStackTrace(e));
+                    Loggers.error(logger, e);
                 }
             }
         }
@@ -241,36 +536,46 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
         ctx.channel().close();
     }
 
-    private void processParams(final QueryStringDecoder queryStringDecoder) {
-        final Map<String, List<String>> params = queryStringDecoder.parameters();
+    private boolean isRateLimited(final HttpRequest request) {
+        final String keyHeader = rateLimiter.keyHeader();
+        final String key = keyHeader == null ? null : request.headers().get(keyHeader);
+        final long delay = rateLimiter.acquire(key == null ? clientKey : RateLimiter.keyOf(key));
 
-        for (final Map.Entry<String, List<String>> crtParam : params.entrySet()) {
-            for (final String crtValue : crtParam.getValue()) {
-                try {
-                    listener.onParameter(crtParam.getKey(), crtValue);
-                } catch (final Exception e) {
-                    if (logger.isErrorEnabled()) {
-                        logger.error(getStackTrace(e));
-                    }
-                }
+        if (delay == 0) {
+            return false;
+        }
 
-                if (wasCommitted) {
-                    return;
+        response.writeRejection(HttpResponseStatus.TOO_MANY_REQUESTS,
+                errorResponses.response(HttpResponseStatus.TOO_MANY_REQUESTS, rateLimiter.retryAfterSeconds(delay)));
+        return true;
+    }
+
+    private void processParams() {
+        while (requestUri.nextParameter()) {
+            try {
+                listener.onParameter(requestUri.name(), requestUri.value());
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
                 }
             }
+
+            if (wasCommitted) {
+                return;
+            }
         }
     }
 
     private void processHeaders(final HttpRequest request) {
-        final List<Map.Entry<String, String>> headers = request.headers().entries();
+        final Iterator<Map.Entry<CharSequence, CharSequence>> headers = request.headers().iteratorCharSequence();
 
-        for (int i = 0; i < headers.size(); i++) {
-            final Map.Entry<String, String> crtHeader = headers.get(i);
+        while (headers.hasNext()) {
+            final Map.Entry<CharSequence, CharSequence> crtHeader = headers.next();
             try {
                 listener.onHeader(crtHeader.getKey(), crtHeader.getValue());
             } catch (final Exception e) {
                 if (logger.isErrorEnabled()) {
-                    logger.error(getStackTrace(e));
+                    Loggers.error(logger, e);
                 }
             }
 
@@ -281,141 +586,170 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
     }
 
     private void processBody(final HttpContent chunk) {
-        if (postDecoder.isMultipart()) {
+        try {
+            bodyArea.setBuffer(chunk.content());
+            listener.onBodyContent(bodyArea, 0, chunk.content().readableBytes());
+        } catch (final Exception e) {
+            if (logger.isErrorEnabled()) {
+                Loggers.error(logger, e);
+            }
+        }
+        bodyArea.setBuffer(null);
+    }
+
+    private void startBody(final HttpRequest request) {
+        final String boundary = NettyMultipartParser.boundaryOf(request.headers().get(HttpHeaderNames.CONTENT_TYPE));
+
+        if (boundary != null) {
+            multipartParser.reset(boundary);
+            isMultipart = true;
+        } else {
+            hasBody = true;
             try {
-                postDecoder.offer(chunk);
-            } catch (final HttpPostRequestDecoder.ErrorDataDecoderException e) {
-                try {
-                    listener.onError(e);
-                } catch (final Exception ee) {
-                    if (logger.isErrorEnabled()) {
-                        logger.error(getStackTrace(ee));
-                    }
+                listener.onBodyStarted();
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
                 }
+            }
+        }
+    }
 
-                if (wasCommitted) {
-                    return;
-                }
+    private void writeToChannel(final Object message) {
+        final Channel channel = context.channel();
+        lastWriteFuture = traceRing == null ? channel.write(message, channel.voidPromise()) : channel.write(message);
+    }
+
+    private FlushTracer flushTracer(final long requestId) {
+        final FlushTracer result = flushTracers.isEmpty() ? new FlushTracer() : flushTracers.poll();
+        result.requestId = requestId;
+        return result;
+    }
+
+    private final class FlushTracer implements ChannelFutureListener {
+        private long requestId;
+
+        @Override
+        public void operationComplete(final ChannelFuture future) {
+            traceRing.end(requestId);
+            flushTracers.offer(this);
+        }
+    }
+
+    private final class NettyMultipartListener implements NettyMultipartParser.Listener {
+
+        @Override
+        public void onField(final CharSequence name, final CharSequence value) {
+            if (wasCommitted) {
+                return;
             }
 
             try {
-                while (postDecoder.hasNext()) {
-                    final InterfaceHttpData data = postDecoder.next();
-
-                    if (data != null) {
-                        if (data.getHttpDataType().equals(InterfaceHttpData.HttpDataType.Attribute)) {
-                            final Attribute attribute = (Attribute) data;
-
-                            try {
-                                listener.onParameter(attribute.getName(), attribute.getValue());
-                            } catch (final Exception e) {
-                                if (logger.isErrorEnabled()) {
-                                    logger.error(getStackTrace(e));
-                                }
-                            }
-
-                            if (wasCommitted) {
-                                return;
-                            }
-                        }
-
-                        if (data.getHttpDataType().equals(InterfaceHttpData.HttpDataType.FileUpload)) {
-                            try {
-                                listener.onPartStarted();
-                            } catch (final Exception e) {
-                                if (logger.isErrorEnabled()) {
-                                    logger.error(getStackTrace(e));
-                                }
-                            }
-
-                            final ByteBuf part = ((FileUpload) data).content();
-
-                            try {
-                                listener.onPartContent(new NettyInputByteBuffer(part), 0, part.readableBytes());
-                            } catch (final Exception e) {
-                                if (logger.isErrorEnabled()) {
-                                    logger.error(getStackTrace(e));
-                                }
-                            }
-
-                            try {
-                                listener.onPartFinished();
-                            } catch (final Exception e) {
-                                if (logger.isErrorEnabled()) {
-                                    logger.error(getStackTrace(e));
-                                }
-                            }
-
-                            if (wasCommitted) {
-                                return;
-                            }
-                        }
-                    }
-                }
-            } catch (final HttpPostRequestDecoder.EndOfDataDecoderException e) {
-                try {
-                    listener.onError(e);
-                } catch (final Exception ee) {
-                    if (logger.isErrorEnabled()) {
-                        logger.error(getStackTrace(e));
-                    }
+                listener.onParameter(name, value);
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
                 }
             }
-            return;
         }
 
-        try {
-            listener.onBodyStarted();
-        } catch (final Exception e) {
-            if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+        @Override
+        public void onPartStarted(final CharSequence name, final CharSequence fileName,
+                final CharSequence contentType) {
+            if (wasCommitted) {
+                return;
+            }
+
+            try {
+                listener.onPartStarted(name, fileName, contentType);
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
+                }
             }
         }
 
-        try {
-            listener.onBodyContent(new NettyInputByteBuffer(chunk.content()), 0, chunk.content().readableBytes());
-        } catch (final Exception e) {
-            if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+        @Override
+        public void onPartContent(final ByteBuf content) {
+            if (wasCommitted) {
+                return;
             }
+
+            partArea.setBuffer(content);
+            try {
+                listener.onPartContent(partArea, content.readerIndex(), content.readableBytes());
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
+                }
+            }
+            partArea.setBuffer(null);
         }
-    }
 
-    private void createPostDecoder(final HttpRequest request) {
-        try {
-            postDecoder = new HttpPostRequestDecoder(FACTORY, request);
-        } catch (final HttpPostRequestDecoder.ErrorDataDecoderException e) {
-            if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+        @Override
+        public void onPartFinished() {
+            if (wasCommitted) {
+                return;
+            }
+
+            try {
+                listener.onPartFinished();
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
+                }
             }
         }
-    }
 
-    private String getStackTrace(final Throwable e) {
-        return Stream.of(e.getStackTrace())
-                .map(Object::toString)
-                .collect(Collectors.joining("\n"));
+        @Override
+        public void onError(final Throwable exception) {
+            if (wasCommitted) {
+                return;
+            }
+
+            try {
+                listener.onError(exception);
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
+                }
+            }
+        }
     }
 
     private class NettyHttpResponse implements HttpResponse {
 
         private static final short BYTES_IN_CHAR = 2;
+        private static final int MAX_INT_DIGITS = 10;
         private final String httpVersion = HttpVersion.HTTP_1_1.toString();
         private static final String EOL = "\n";
-        private static final String COLON = ":";
         private static final String SPACE = " ";
         private static final String LOCATION_HEADER_NAME = "Location:";
-        private static final String DEFAULT_CONTENT_TYPE = "text/html; charset=utf-8";
         private static final String CONTENT_TYPE_HEADER_NAME = "Content-Type";
         private static final String CONTENT_LENGTH_HEADER_NAME = "Content-Length";
+        private static final String CONNECTION_CLOSE_HEADER = "Connection: close";
+        private static final String EMPTY_CONTENT_LENGTH_HEADER = "Content-Length: 0";
+        private static final String HEADER_SEPARATOR = ":" + SPACE;
+        private static final String CHUNKED_ENCODING_HEADER = "Transfer-Encoding: chunked";
+        private static final String LAST_CHUNK = "0\r\n\r\n";
 
         private ByteBuf buf;
+        private Http2Headers http2Headers;
         private final Charset charset = Charset.defaultCharset();
+        private int statusCode;
+        private ByteBuf snapshotContent;
+        private int snapshotStatusLineLength;
+        private int connectionHeaderStart = -1;
+        private int connectionHeaderEnd;
+        private boolean isCloseDelimited;
+        private NettyHttpResponseSnapshot snapshot;
 
         private final NettyHttpSuccess nettyHttpSuccess = new NettyHttpSuccess();
         private final NettyHttpRedirect nettyHttpRedirect = new NettyHttpRedirect();
         private final NettyHttpError nettyHttpError = new NettyHttpError();
         private final NettyHttpOutputMessage nettyHttpOutputMessage = new NettyHttpOutputMessage();
+        private final NettyOutputBuffer nettyOutputBuffer = new NettyOutputBuffer();
+        private final NettyChunkedOutputBuffer nettyChunkedOutputBuffer = new NettyChunkedOutputBuffer();
 
         @Override
         public HttpSuccess success() {
@@ -432,10 +766,200 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
             return nettyHttpRedirect;
         }
 
-        private void writeIntoBuffer(final CharSequence message) {
+        @Override
+        public boolean isRecordable() {
+            return !isHttp2Stream;
+        }
+
+        @Override
+        public boolean isWarmUp() {
+            return isWarmUp;
+        }
+
+        @Override
+        public void startRecording() {
+            if (snapshotContent == null && !isHttp2Stream) {
+                snapshotContent = context.alloc().directBuffer();
+            }
+        }
+
+        @Override
+        public HttpResponseSnapshot takeSnapshot() {
+            final HttpResponseSnapshot result = snapshot;
+            snapshot = null;
+            return result;
+        }
+
+        @Override
+        public void write(final HttpResponseSnapshot snapshot) {
+            if (wasCommitted) {
+                return;
+            }
+
+            if (buf != null) {
+                buf.release();
+                buf = null;
+            }
+
+            http2Headers = null;
+            connectionHeaderStart = -1;
+            discardSnapshot();
+
+            final NettyHttpResponseSnapshot cached = (NettyHttpResponseSnapshot) snapshot;
+            statusCode = cached.statusCode();
+            if (cached.isCloseDelimited()) {
+                isKeepAlive = false;
+            }
+
+            if (metrics != null && firstByteTime == 0) {
+                firstByteTime = System.nanoTime();
+            }
+
+            if (isKeepAlive) {
+                writeToChannel(cached.retainedContent());
+            } else {
+                writeToChannel(cached.retainedStatusLine());
+                writeToChannel(CONNECTION_CLOSE_LINE.duplicate());
+                writeToChannel(cached.retainedHeadersAndBody());
+            }
+            completeResponse(true);
+        }
+
+        @Override
+        public Executor executor() {
+            return context.executor();
+        }
+
+        @Override
+        public int statusCode() {
+            return statusCode;
+        }
+
+        private void writeRejection(final HttpResponseStatus status, final ByteBuf canned) {
+            statusCode = status.code();
+            if (metrics != null && firstByteTime == 0) {
+                firstByteTime = System.nanoTime();
+            }
+
+            isKeepAlive = false;
+            writeToChannel(canned.duplicate());
+            completeResponse(false);
+        }
+
+        private void writeStatusLine(final HttpResponseStatus status) {
+            statusCode = status.code();
+
+            if (isHttp2Stream) {
+                http2Headers = new DefaultHttp2Headers().status(status.codeAsText());
+                return;
+            }
+
+            writeIntoBuffer(httpVersion);
+            writeIntoBuffer(SPACE);
+            writeIntoBuffer(status.codeAsText());
+            writeIntoBuffer(SPACE);
+            writeIntoBuffer(status.reasonPhrase());
+            writeIntoBuffer(EOL);
+            snapshotStatusLineLength = buf.readableBytes();
+
+            if (!isKeepAlive) {
+                connectionHeaderStart = buf.writerIndex();
+                writeIntoBuffer(CONNECTION_CLOSE_HEADER);
+                writeIntoBuffer(EOL);
+                connectionHeaderEnd = buf.writerIndex();
+            }
+        }
+
+        private void writeLocation(final CharSequence location) {
+            if (isHttp2Stream) {
+                http2Headers.set(HttpHeaderNames.LOCATION, AsciiString.of(location));
+                return;
+            }
+
+            writeIntoBuffer(LOCATION_HEADER_NAME);
+            writeIntoBuffer(SPACE);
+            writeIntoBuffer(location);
+            writeIntoBuffer(EOL);
+        }
+
+        private void writeDecimal(final int value) {
+            if (value < 0) {
+                writeIntoBuffer(Integer.toString(value));
+                return;
+            }
+
+            ensureBuffer();
+
+            if (buf.writableBytes() < MAX_INT_DIGITS) {
+                flushBuffer();
+            }
+
+            int divisor = 1;
+            while (divisor <= value / 10) {
+                divisor *= 10;
+            }
+
+            for (; divisor > 0; divisor /= 10) {
+                buf.writeByte('0' + value / divisor % 10);
+            }
+        }
+
+        private void writeHeader(final CharSequence name, final CharSequence value) {
+            if (isHttp2Stream) {
+                final AsciiString lowerCaseName = AsciiString.of(name).toLowerCase();
+                if (!NettyHttp2ResponseAdapter.isConnectionSpecific(lowerCaseName)) {
+                    http2Headers.add(lowerCaseName, AsciiString.of(value));
+                }
+                return;
+            }
+
+            writeIntoBuffer(name);
+            writeIntoBuffer(HEADER_SEPARATOR);
+            writeIntoBuffer(value);
+            writeIntoBuffer(EOL);
+        }
+
+        private void writeContentLength(final int contentLength) {
+            if (isHttp2Stream) {
+                http2Headers.setInt(HttpHeaderNames.CONTENT_LENGTH, contentLength);
+                return;
+            }
+
+            writeIntoBuffer(CONTENT_LENGTH_HEADER_NAME);
+            writeIntoBuffer(HEADER_SEPARATOR);
+            writeDecimal(contentLength);
+            writeIntoBuffer(EOL);
+        }
+
+        private void endHead() {
+            if (isHttp2Stream) {
+                ensureBuffer();
+                return;
+            }
+
+            writeIntoBuffer(EOL);
+        }
+
+        private void writeCanned(final ByteBuf canned) {
+            discardSnapshot();
+
+            if (isHttp2Stream) {
+                http2Headers = null;
+                writeToChannel(canned.duplicate());
+                return;
+            }
+
+            writeIntoBuffer(canned);
+        }
+
+        private void ensureBuffer() {
             if (buf == null) {
                 buf = context.alloc().buffer();
             }
+        }
+
+        private void writeIntoBuffer(final CharSequence message) {
+            ensureBuffer();
 
             if (buf.writableBytes() < message.length() * BYTES_IN_CHAR) {
                 flushBuffer();
@@ -444,34 +968,130 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
             buf.writeCharSequence(message, charset);
         }
 
+        private void writeIntoBuffer(final ByteBuf bytes) {
+            ensureBuffer();
+
+            buf.writeBytes(bytes, bytes.readerIndex(), bytes.readableBytes());
+        }
+
         private void flushBuffer() {
-            context.channel().write(buf);
+            writeBuffer(false);
             buf = context.alloc().buffer();
         }
 
+        private void writeBuffer(final boolean isLast) {
+            if (metrics != null && firstByteTime == 0) {
+                firstByteTime = System.nanoTime();
+            }
+
+            if (snapshotContent != null) {
+                if (connectionHeaderStart >= 0) {
+                    snapshotContent.writeBytes(buf, buf.readerIndex(), connectionHeaderStart - buf.readerIndex());
+                    snapshotContent.writeBytes(buf, connectionHeaderEnd, buf.writerIndex() - connectionHeaderEnd);
+                } else {
+                    snapshotContent.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+                }
+            }
+            connectionHeaderStart = -1;
+
+            if (!isHttp2Stream) {
+                writeToChannel(buf);
+                return;
+            }
+
+            if (http2Headers != null) {
+                final boolean isHeadLast = isLast && !buf.isReadable();
+                writeToChannel(new DefaultHttp2HeadersFrame(http2Headers, isHeadLast));
+                http2Headers = null;
+
+                if (isHeadLast) {
+                    buf.release();
+                    return;
+                }
+            }
+
+            writeToChannel(new DefaultHttp2DataFrame(buf, isLast));
+        }
+
+        private void completeResponse(final boolean notifyListener) {
+            final Channel channel = context.channel();
+
+            if (traceRing != null) {
+                traceRing.mark(traceId, RequestPhase.COMMITTED);
+                lastWriteFuture.addListener(flushTracer(traceId));
+            }
+
+            channel.flush();
+            if (!isKeepAlive) {
+                channel.close();
+            }
+
+            if (metrics != null) {
+                final long now = System.nanoTime();
+                metrics.requests().record(statusCode, firstByteTime - requestStartTime, now - requestStartTime);
+            }
+
+            if (snapshotContent != null) {
+                if (snapshot != null) {
+                    snapshot.release();
+                }
+
+                snapshot = new NettyHttpResponseSnapshot(snapshotContent, snapshotStatusLineLength, statusCode,
+                        isCloseDelimited);
+                snapshotContent = null;
+            }
+            isCloseDelimited = false;
+
+            wasCommitted = true;
+
+            if (notifyListener && listener != null) {
+                listener.onCommitted();
+            }
+
+            if (isRequestRead) {
+                completeExchange();
+            }
+        }
+
+        private void discardSnapshot() {
+            if (snapshotContent != null) {
+                snapshotContent.release();
+                snapshotContent = null;
+            }
+        }
+
+        private void releaseSnapshot() {
+            discardSnapshot();
+
+            if (snapshot != null) {
+                snapshot.release();
+                snapshot = null;
+            }
+        }
+
         private final class NettyHttpSuccess implements HttpSuccess {
 
             @Override
             public HttpOutputMessage ok() {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.OK + EOL);
+                writeStatusLine(HttpResponseStatus.OK);
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage created() {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.CREATED + EOL);
+                writeStatusLine(HttpResponseStatus.CREATED);
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage noContent() {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.NO_CONTENT + EOL);
+                writeStatusLine(HttpResponseStatus.NO_CONTENT);
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage custom(final int code) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.valueOf(code) + EOL);
+                writeStatusLine(HttpResponseStatus.valueOf(code));
                 return nettyHttpOutputMessage;
             }
         }
@@ -480,216 +1100,192 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
 
             @Override
             public HttpOutputMessage movedPermanently(final CharSequence location) {
-                writeIntoBuffer(
-                        httpVersion + SPACE + HttpResponseStatus.MOVED_PERMANENTLY + EOL + LOCATION_HEADER_NAME +
-                                COLON + SPACE + location.toString() + EOL);
+                writeStatusLine(HttpResponseStatus.MOVED_PERMANENTLY);
+                writeLocation(location);
 
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage found(final CharSequence location) {
-                writeIntoBuffer(
-                        httpVersion + SPACE + HttpResponseStatus.FOUND + EOL + LOCATION_HEADER_NAME + COLON + SPACE +
-                                location.toString() + EOL);
+                writeStatusLine(HttpResponseStatus.FOUND);
+                writeLocation(location);
 
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage seeOther(final CharSequence location) {
-                writeIntoBuffer(
-                        httpVersion + SPACE + HttpResponseStatus.SEE_OTHER + EOL + LOCATION_HEADER_NAME + COLON +
-                                SPACE + location.toString() + EOL);
+                writeStatusLine(HttpResponseStatus.SEE_OTHER);
+                writeLocation(location);
 
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage custom(final int code, final CharSequence location) {
-                writeIntoBuffer(
-                        httpVersion + SPACE + HttpResponseStatus.valueOf(code) + EOL + LOCATION_HEADER_NAME + COLON +
-                                SPACE + location.toString() + EOL);
+                writeStatusLine(HttpResponseStatus.valueOf(code));
+                writeLocation(location);
 
                 return nettyHttpOutputMessage;
             }
         }
 
         private final class NettyHttpError implements HttpError {
-            private static final String MESSAGE_NAME = "Message:";
-            private static final String EXCEPTION_NAME = "Exception:";
 
             @Override
             public HttpOutputMessage badRequest() {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.BAD_REQUEST + EOL);
+                writeStatusLine(HttpResponseStatus.BAD_REQUEST);
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage unauthorized() {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.UNAUTHORIZED + EOL);
+                writeStatusLine(HttpResponseStatus.UNAUTHORIZED);
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage forbidden() {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.FORBIDDEN + EOL);
+                writeStatusLine(HttpResponseStatus.FORBIDDEN);
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage notFound() {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.NOT_FOUND + EOL);
+                writeStatusLine(HttpResponseStatus.NOT_FOUND);
                 return nettyHttpOutputMessage;
             }
 
             @Override
-            public HttpOutputMessage internalServerError(final CharSequence message) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.INTERNAL_SERVER_ERROR + EOL);
-
-                nettyHttpOutputMessage
-                        .header(CONTENT_TYPE_HEADER_NAME, DEFAULT_CONTENT_TYPE)
-                        .header(CONTENT_LENGTH_HEADER_NAME,
-                                String.valueOf(message.length() + MESSAGE_NAME.length() + EOL.length()));
-
-                writeIntoBuffer(EOL + MESSAGE_NAME + EOL + message);
+            public HttpOutputMessage serviceUnavailable(final int retryAfterSeconds) {
+                statusCode = HttpResponseStatus.SERVICE_UNAVAILABLE.code();
+                isKeepAlive = false;
+                writeCanned(errorResponses.response(HttpResponseStatus.SERVICE_UNAVAILABLE, retryAfterSeconds));
 
                 nettyHttpOutputMessage.isBodyEmpty = false;
                 return nettyHttpOutputMessage;
             }
 
             @Override
-            public HttpOutputMessage internalServerError(final Throwable throwable) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.INTERNAL_SERVER_ERROR + EOL);
-
-                final String exception = getStackTrace(throwable);
-
-                nettyHttpOutputMessage
-                        .header(CONTENT_TYPE_HEADER_NAME, DEFAULT_CONTENT_TYPE)
-                        .header(CONTENT_LENGTH_HEADER_NAME,
-                                String.valueOf(exception.length() + EXCEPTION_NAME.length() + EOL.length()));
-
-                writeIntoBuffer(EOL + EXCEPTION_NAME + EOL + exception);
+            public HttpOutputMessage internalServerError(final CharSequence message) {
+                return writeError(HttpResponseStatus.INTERNAL_SERVER_ERROR, message, null);
+            }
 
-                nettyHttpOutputMessage.isBodyEmpty = false;
-                return nettyHttpOutputMessage;
+            @Override
+            public HttpOutputMessage internalServerError(final Throwable throwable) {
+                return writeError(HttpResponseStatus.INTERNAL_SERVER_ERROR, null, throwable);
             }
 
             @Override
             public HttpOutputMessage internalServerError(final CharSequence message, final Throwable throwable) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.INTERNAL_SERVER_ERROR + EOL);
-
-                final String exception = getStackTrace(throwable);
-                nettyHttpOutputMessage
-                        .header(CONTENT_TYPE_HEADER_NAME, DEFAULT_CONTENT_TYPE)
-                        .header(CONTENT_LENGTH_HEADER_NAME,
-                                String.valueOf(exception.length() + MESSAGE_NAME.length() + message.length() +
-                                        3 * EXCEPTION_NAME.length()));
-
-                writeIntoBuffer(EOL + MESSAGE_NAME + EOL + message + EOL);
-                writeIntoBuffer(EXCEPTION_NAME + EOL + exception);
-
-                nettyHttpOutputMessage.isBodyEmpty = false;
-                return nettyHttpOutputMessage;
+                return writeError(HttpResponseStatus.INTERNAL_SERVER_ERROR, message, throwable);
             }
 
             @Override
             public HttpOutputMessage custom(final int code) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.valueOf(code) + EOL);
+                writeStatusLine(HttpResponseStatus.valueOf(code));
                 return nettyHttpOutputMessage;
             }
 
             @Override
             public HttpOutputMessage custom(final int code, final CharSequence message) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.valueOf(code) + EOL);
-
-                nettyHttpOutputMessage
-                        .header(CONTENT_TYPE_HEADER_NAME, DEFAULT_CONTENT_TYPE)
-                        .header(CONTENT_LENGTH_HEADER_NAME,
-                                String.valueOf(message.length() + MESSAGE_NAME.length() + EOL.length()));
-
-                writeIntoBuffer(EOL + MESSAGE_NAME + EOL + message);
-
-                return nettyHttpOutputMessage;
+                return writeError(HttpResponseStatus.valueOf(code), message, null);
             }
 
             @Override
             public HttpOutputMessage custom(final int code, final Throwable throwable) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.valueOf(code) + EOL);
-
-                final String exception = getStackTrace(throwable);
-                nettyHttpOutputMessage
-                        .header(CONTENT_TYPE_HEADER_NAME, DEFAULT_CONTENT_TYPE)
-                        .header(CONTENT_LENGTH_HEADER_NAME,
-                                String.valueOf(exception.length() + EXCEPTION_NAME.length() + EOL.length()));
-
-                writeIntoBuffer(EOL + EXCEPTION_NAME + EOL + exception);
-
-                nettyHttpOutputMessage.isBodyEmpty = false;
-                return nettyHttpOutputMessage;
+                return writeError(HttpResponseStatus.valueOf(code), null, throwable);
             }
 
             @Override
             public HttpOutputMessage custom(final int code, final CharSequence message, final Throwable throwable) {
-                writeIntoBuffer(httpVersion + SPACE + HttpResponseStatus.valueOf(code) + EOL);
+                return writeError(HttpResponseStatus.valueOf(code), message, throwable);
+            }
 
-                final String exception = getStackTrace(throwable);
-                nettyHttpOutputMessage
-                        .header(CONTENT_TYPE_HEADER_NAME, DEFAULT_CONTENT_TYPE)
-                        .header(CONTENT_LENGTH_HEADER_NAME,
-                                String.valueOf(
-                                        exception.length() + MESSAGE_NAME.length() + message.length() +
-                                                EXCEPTION_NAME.length() + 3 * EOL.length()));
+            private HttpOutputMessage writeError(final HttpResponseStatus status, final CharSequence message,
+                    final Throwable throwable) {
+                if (message == null && (throwable == null || !errorResponses.isStackTraceEnabled())) {
+                    statusCode = status.code();
+                    isKeepAlive = false;
+                    writeCanned(errorResponses.response(status));
+                } else {
+                    final byte[] body = errorResponses.body(status, message, throwable);
 
-                writeIntoBuffer(EOL + MESSAGE_NAME + EOL + message + EOL);
-                writeIntoBuffer(EXCEPTION_NAME + EOL + exception);
+                    writeStatusLine(status);
+                    nettyHttpOutputMessage.header(CONTENT_TYPE_HEADER_NAME, errorResponses.contentType());
+                    writeContentLength(body.length);
+                    endHead();
 
+                    buf.writeBytes(body);
+                }
+
+                nettyHttpOutputMessage.isBodyEmpty = false;
                 return nettyHttpOutputMessage;
             }
         }
 
         private final class NettyHttpOutputMessage implements HttpOutputMessage {
             private boolean isBodyEmpty = true;
+            private boolean isChunked;
 
             @Override
             public HttpOutputMessage header(final CharSequence name, final CharSequence value) {
-                writeIntoBuffer(name + ":" + SPACE + value + EOL);
+                writeHeader(name, value);
                 return this;
             }
 
             @Override
             public ByteAppendable body(final CharSequence contentType) {
-                throw new UnsupportedOperationException("Multipart is not implemented yet!!!");
+                header(CONTENT_TYPE_HEADER_NAME, contentType);
+                isBodyEmpty = false;
+
+                if (!isKeepAlive) {
+                    isCloseDelimited = true;
+                    endHead();
+                    return nettyOutputBuffer;
+                }
+
+                writeIntoBuffer(CHUNKED_ENCODING_HEADER);
+                writeIntoBuffer(EOL);
+                writeIntoBuffer(EOL);
+
+                discardSnapshot();
+                isChunked = true;
+                return nettyChunkedOutputBuffer;
             }
 
             @Override
             public ByteAppendable body(final CharSequence contentType, final int contentLength) {
                 header(CONTENT_TYPE_HEADER_NAME, contentType);
-                header(CONTENT_LENGTH_HEADER_NAME, Integer.toString(contentLength));
-
-                writeIntoBuffer(EOL);
+                writeContentLength(contentLength);
+                endHead();
 
-                return new NettyOutputBuffer();
+                return nettyOutputBuffer;
             }
 
             @Override
             public void commit() {
-                final Channel channel = context.channel();
-
-                if (isBodyEmpty) {
+                if (isBodyEmpty && !isHttp2Stream) {
+                    if (statusCode != HttpResponseStatus.NO_CONTENT.code()) {
+                        writeIntoBuffer(EMPTY_CONTENT_LENGTH_HEADER);
+                        writeIntoBuffer(EOL);
+                    }
                     writeIntoBuffer(EOL);
                 }
 
-                channel.write(buf);
-                channel.flush();
+                if (isChunked) {
+                    nettyChunkedOutputBuffer.endChunk();
+                    writeIntoBuffer(LAST_CHUNK);
+                    isChunked = false;
+                }
 
-                context.channel().close();
+                ensureBuffer();
+                writeBuffer(true);
                 buf = null;
                 isBodyEmpty = true;
 
-                wasCommitted = true;
-
-                listener.onCommitted();
+                completeResponse(true);
             }
         }
 
@@ -707,15 +1303,98 @@ class NettyHttpHandler extends SimpleChannelInboundHandler<HttpObject> {
             @Override
             public void appendArea(final ByteArea area, final long startIndex, final long length) {
                 if (area instanceof NettyInputByteBuffer) {
-                    final NettyInputByteBuffer nettyArea = (NettyInputByteBuffer) area;
-                    buf.writeBytes(nettyArea.buffer());
+                    buf.writeBytes(((NettyInputByteBuffer) area).buffer(), (int) startIndex, (int) length);
+                    return;
+                }
+
+                for (long i = startIndex; i < startIndex + length; i++) {
+                    appendByte(area.getByte(i));
+                }
+            }
+        }
+
+        private final class NettyChunkedOutputBuffer implements ByteAppendable {
+            private static final int SIZE_DIGITS = 4;
+            private static final int MAX_CHUNK_SIZE = (1 << SIZE_DIGITS * 4) - 1;
+            private static final int CHUNK_OVERHEAD = SIZE_DIGITS + 4;
+            private static final int CHUNK_BUFFER_SIZE = 8 * 1024;
+            private static final String CRLF = "\r\n";
+
+            private int chunkStart = -1;
+
+            @Override
+            public void appendByte(final byte toAppend) {
+                if (chunkStart < 0 || buf.writableBytes() <= CRLF.length() ||
+                        buf.writerIndex() - chunkStart - SIZE_DIGITS - CRLF.length() == MAX_CHUNK_SIZE) {
+                    startChunk();
+                }
+
+                buf.writeByte(toAppend);
+            }
+
+            @Override
+            public void appendArea(final ByteArea area, final long startIndex, final long length) {
+                if (area instanceof NettyInputByteBuffer) {
+                    if (length == 0) {
+                        return;
+                    }
+
+                    endChunk();
+                    writeHex((int) length);
+                    buf.writeCharSequence(CRLF, charset);
+                    buf.writeBytes(((NettyInputByteBuffer) area).buffer(), (int) startIndex, (int) length);
+                    buf.writeCharSequence(CRLF, charset);
                     return;
                 }
 
-                for (long i = startIndex; i < length; i++) {
+                for (long i = startIndex; i < startIndex + length; i++) {
                     appendByte(area.getByte(i));
                 }
             }
+
+            private void startChunk() {
+                endChunk();
+
+                if (buf.writableBytes() <= CHUNK_OVERHEAD) {
+                    writeBuffer(false);
+                    buf = context.alloc().buffer(CHUNK_BUFFER_SIZE);
+                }
+
+                chunkStart = buf.writerIndex();
+                for (int i = 0; i < SIZE_DIGITS; i++) {
+                    buf.writeByte('0');
+                }
+                buf.writeCharSequence(CRLF, charset);
+            }
+
+            private void endChunk() {
+                if (chunkStart < 0) {
+                    return;
+                }
+
+                final int size = buf.writerIndex() - chunkStart - SIZE_DIGITS - CRLF.length();
+                if (size == 0) {
+                    buf.writerIndex(chunkStart);
+                } else {
+                    for (int i = SIZE_DIGITS - 1, rest = size; i >= 0; i--, rest >>>= 4) {
+                        buf.setByte(chunkStart + i, HEX_DIGITS[rest & 0xF]);
+                    }
+                    buf.writeCharSequence(CRLF, charset);
+                }
+
+                chunkStart = -1;
+            }
+
+            private void writeHex(final int value) {
+                int shift = Integer.SIZE - 4;
+                while (shift > 0 && value >>> shift == 0) {
+                    shift -= 4;
+                }
+
+                for (; shift >= 0; shift -= 4) {
+                    buf.writeByte(HEX_DIGITS[value >>> shift & 0xF]);
+                }
+            }
         }
     }
 }
\ No newline at end of file
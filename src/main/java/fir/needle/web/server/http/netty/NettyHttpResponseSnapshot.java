@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import fir.needle.web.server.http.HttpResponseSnapshot;
+import io.netty.buffer.ByteBuf;
+
+final class NettyHttpResponseSnapshot implements HttpResponseSnapshot {
+    private final ByteBuf content;
+    private final int statusLineLength;
+    private final int statusCode;
+    private final boolean isCloseDelimited;
+
+    NettyHttpResponseSnapshot(final ByteBuf content, final int statusLineLength, final int statusCode,
+            final boolean isCloseDelimited) {
+        this.content = content;
+        this.statusLineLength = statusLineLength;
+        this.statusCode = statusCode;
+        this.isCloseDelimited = isCloseDelimited;
+    }
+
+    boolean isCloseDelimited() {
+        return isCloseDelimited;
+    }
+
+    ByteBuf retainedContent() {
+        return content.retainedDuplicate();
+    }
+
+    ByteBuf retainedStatusLine() {
+        return content.retainedSlice(content.readerIndex(), statusLineLength);
+    }
+
+    ByteBuf retainedHeadersAndBody() {
+        return content.retainedSlice(content.readerIndex() + statusLineLength,
+                content.readableBytes() - statusLineLength);
+    }
+
+    @Override
+    public int statusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public int size() {
+        return content.readableBytes();
+    }
+
+    @Override
+    public HttpResponseSnapshot retain() {
+        content.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return content.release();
+    }
+}
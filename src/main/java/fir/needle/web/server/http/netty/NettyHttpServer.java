@@ -23,34 +23,96 @@
  */
 package fir.needle.web.server.http.netty;
 
-import fir.needle.joint.colleclions.ConcurrentObjectPool;
 import fir.needle.joint.colleclions.Pool;
 import fir.needle.joint.logging.Logger;
 import fir.needle.joint.logging.SystemLogger;
 import fir.needle.web.server.http.HttpRequestListener;
+import fir.needle.web.server.limit.RateLimiter;
+import fir.needle.web.server.metrics.ServerMetrics;
+import fir.needle.web.server.trace.RequestTracer;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioChannelOption;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
 
 import javax.net.ssl.SSLException;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 
 public class NettyHttpServer implements AutoCloseable {
-    private final Pool<HttpRequestListener> listenerPool;
-    private final int port;
+    private static final String HTTP1_DECODER_NAME = "http1Decoder";
+    private static final String HTTP1_UPGRADE_CODEC_NAME = "http1UpgradeCodec";
+    private static final String HTTP1_UPGRADE_HANDLER_NAME = "http1UpgradeHandler";
+    private static final String HTTP1_HANDLER_NAME = "http1Handler";
+    private static final String HTTP1_TIMEOUT_HANDLER_NAME = "http1TimeoutHandler";
+    private static final long TIMER_TICK_MILLIS = 100;
+    private static final int MAX_UPGRADE_CONTENT_LENGTH = 64 * 1024;
+
+    private final List<NettyEndpoint> endpoints;
+    private final NettyVirtualHosts virtualHosts;
     private final int maxInitialLineLength;
     private final int maxHeaderSize;
     private final int maxChunkSize;
@@ -58,10 +120,41 @@ public class NettyHttpServer implements AutoCloseable {
     private final int workerThreadsAmount;
     private final SslContext sslContext;
     private final Logger logger;
+    private final ServerMetrics metrics;
+    private final RequestTracer tracer;
+    private final NettyErrorResponses errorResponses;
+    private final NettyMultipartOptions multipartOptions;
+    private final boolean isHttp2Enabled;
+    private final long ticketKeyRotationPeriodNanos;
+    private final long shutdownTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long headerReadTimeoutNanos;
+    private final long bodyReadTimeoutNanos;
+    private final long writeTimeoutNanos;
+    private final int maxConnections;
+    private final RateLimiter rateLimiter;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ChannelFutureListener connectionReleaser = future -> openConnections.decrementAndGet();
+    private final List<NettyEventLoopNode> nodes;
+    private final String threadNamePrefix;
+    private final int threadPriority;
+    private final CpuAffinity cpuAffinity;
+    private final ChannelOption<Boolean> reusePortOption;
+    private final boolean isNativeTransport;
+    private final NettyWarmUp warmUp;
+    private final boolean isKeepAliveEnabled;
+
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final AtomicBoolean isClosing = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final List<Channel> serverChannels = new CopyOnWriteArrayList<>();
+    private volatile EventLoopGroup[] bossGroups;
+    private volatile EventLoopGroup[] workerGroups;
+    private volatile Timer timer;
 
     NettyHttpServer(final NettyHttpServerBuilder builder) {
-        this.port = builder.port;
-        this.listenerPool = builder.listenerPool;
+        this.endpoints = builder.endpoints;
+        this.virtualHosts = builder.virtualHosts;
         this.maxInitialLineLength = builder.maxInitialLineLength;
         this.maxHeaderSize = builder.maxHeaderSize;
         this.maxChunkSize = builder.maxChunkSize;
@@ -69,6 +162,32 @@ public class NettyHttpServer implements AutoCloseable {
         this.workerThreadsAmount = builder.workerThreadsAmount;
         this.sslContext = builder.sslContext;
         this.logger = builder.logger;
+        this.metrics = builder.metrics;
+        this.tracer = builder.tracer;
+        this.multipartOptions = new NettyMultipartOptions(builder.multipartFieldThreshold,
+                builder.multipartSpoolThreshold, builder.multipartSpoolDirectory);
+        this.isHttp2Enabled = builder.isHttp2Enabled;
+        this.ticketKeyRotationPeriodNanos = builder.ticketKeyRotationPeriodNanos;
+        this.shutdownTimeoutNanos = builder.shutdownTimeoutNanos;
+        this.idleTimeoutNanos = builder.idleTimeoutNanos;
+        this.headerReadTimeoutNanos = builder.headerReadTimeoutNanos;
+        this.bodyReadTimeoutNanos = builder.bodyReadTimeoutNanos;
+        this.writeTimeoutNanos = builder.writeTimeoutNanos;
+        this.maxConnections = builder.maxConnections;
+        this.rateLimiter = builder.rateLimiter;
+        this.nodes = new ArrayList<>(builder.nodes);
+        this.threadNamePrefix = builder.threadNamePrefix;
+        this.threadPriority = builder.threadPriority;
+        this.cpuAffinity = builder.cpuAffinity;
+        this.reusePortOption = builder.reusePortOption;
+        this.isNativeTransport = builder.isNativeTransport;
+        this.warmUp = builder.warmUp;
+        this.isKeepAliveEnabled = builder.isKeepAliveEnabled;
+
+        if (nodes.isEmpty()) {
+            nodes.add(new NettyEventLoopNode(null, null));
+        }
+        this.errorResponses = new NettyErrorResponses(builder.errorFormat, builder.isErrorStackTraceEnabled);
     }
 
     public static NettyHttpServerBuilder builder() {
@@ -76,46 +195,467 @@ public class NettyHttpServer implements AutoCloseable {
     }
 
     public void run() throws Exception {
-        final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        final EventLoopGroup workerGroup = new NioEventLoopGroup(workerThreadsAmount);
+        try {
+            start().get();
+        } catch (final ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+
+        for (final Channel crtChannel : serverChannels) {
+            crtChannel.closeFuture().sync();
+        }
+        close();
+    }
+
+    public synchronized CompletableFuture<SocketAddress> start() {
+        if (bossGroups != null || isClosing.get()) {
+            throw new IllegalStateException("Server can be started only once!");
+        }
+
+        if (warmUp != null) {
+            warmUp();
+        }
+
+        final EventLoopGroup[] bosses = new EventLoopGroup[nodes.size()];
+        final EventLoopGroup[] workers = new EventLoopGroup[nodes.size()];
+
+        for (int i = 0; i < nodes.size(); i++) {
+            final NettyEventLoopNode node = nodes.get(i);
+
+            bosses[i] = newEventLoopGroup(1, newThreadFactory("boss", i, node.bossCpus()));
+            workers[i] = newEventLoopGroup(node.workerThreads(workerThreadsAmount),
+                    newThreadFactory("worker", i, node.workerCpus()));
+        }
+
+        bossGroups = bosses;
+        workerGroups = workers;
+
+        startTicketKeyRotation(bosses[0]);
+
+        if (idleTimeoutNanos > 0 || headerReadTimeoutNanos > 0 || bodyReadTimeoutNanos > 0 || writeTimeoutNanos > 0) {
+            timer = new HashedWheelTimer(new DefaultThreadFactory(threadNamePrefix + "-timeouts", true),
+                    TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        final CompletableFuture<SocketAddress> result = new CompletableFuture<>();
+        bind(0, new int[endpoints.size()], metrics == null ? null : new NettyMetricsHandler(metrics), result);
+
+        return result;
+    }
+
+    public List<SocketAddress> localAddresses() {
+        final List<SocketAddress> result = new ArrayList<>(serverChannels.size());
+
+        for (final Channel crtChannel : serverChannels) {
+            if (crtChannel.localAddress() != null) {
+                result.add(crtChannel.localAddress());
+            }
+        }
+
+        return result;
+    }
+
+    private void warmUp() {
+        final long startTime = System.nanoTime();
+
+        for (final NettyEndpoint endpoint : endpoints) {
+            warmUp.prefill(endpoint.listenerPool());
+
+            if (warmUp.hasRequests()) {
+                warmUp.replay(() -> new ChannelHandler[] {newRequestDecoder(), new NettyHttpHandler(
+                        endpoint.listenerPool(), logger, null, null, errorResponses, multipartOptions, null,
+                        isKeepAliveEnabled, false, true, virtualHosts)});
+            }
+        }
+
+        if (virtualHosts != null) {
+            for (final Pool<HttpRequestListener> crtPool : virtualHosts.pools()) {
+                warmUp.prefill(crtPool);
+            }
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Warm-up finished in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        }
+    }
+
+    private EventLoopGroup newEventLoopGroup(final int threads, final NettyThreadFactory threadFactory) {
+        return isNativeTransport ?
+                new EpollEventLoopGroup(threads, threadFactory) :
+                new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    private Class<? extends ServerChannel> serverChannelClass(final NettyEndpoint endpoint) {
+        if (endpoint.isDomainSocket()) {
+            return EpollServerDomainSocketChannel.class;
+        }
+
+        return isNativeTransport ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    private NettyThreadFactory newThreadFactory(final String role, final int node, final int[] cpus) {
+        return new NettyThreadFactory(threadNamePrefix + "-" + role + "-" + node, threadPriority, cpuAffinity, cpus,
+                logger);
+    }
+
+    private ChannelInitializer<Channel> newChildInitializer(final NettyEndpoint endpoint,
+            final NettyMetricsHandler metricsHandler) {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            public void initChannel(final Channel ch) {
+                if (maxConnections > 0 && !acquireConnection(ch)) {
+                    return;
+                }
+
+                channels.add(ch);
+
+                if (metricsHandler != null) {
+                    ch.pipeline().addLast(metricsHandler);
+                }
+
+                if (endpoint.isTls()) {
+                    ch.pipeline().addLast(sslContext.newHandler(ch.alloc()));
+                }
+
+                if (!isHttp2Enabled) {
+                    addHttp1Handlers(ch.pipeline(), endpoint);
+                } else if (endpoint.isTls()) {
+                    ch.pipeline().addLast(new NettyProtocolNegotiationHandler(endpoint));
+                } else {
+                    addCleartextHandlers(ch.pipeline(), endpoint);
+                }
+            }
+        };
+    }
+
+    private void bind(final int task, final int[] boundPorts, final NettyMetricsHandler metricsHandler,
+            final CompletableFuture<SocketAddress> result) {
+        if (task == nodes.size() * endpoints.size() || isClosing.get()) {
+            if (serverChannels.isEmpty()) {
+                result.completeExceptionally(new IllegalStateException("Server was closed while starting!"));
+            } else {
+                result.complete(serverChannels.get(0).localAddress());
+            }
+            return;
+        }
+
+        final int node = task / endpoints.size();
+        final int index = task % endpoints.size();
+        final NettyEndpoint endpoint = endpoints.get(index);
+
+        if (node > 0 && endpoint.isDomainSocket()) {
+            bind(task + 1, boundPorts, metricsHandler, result);
+            return;
+        }
+
+        final ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroups[node], workerGroups[node])
+                .channel(serverChannelClass(endpoint))
+                .childHandler(newChildInitializer(endpoint, metricsHandler));
+
+        if (endpoint.isDomainSocket()) {
+            try {
+                Files.deleteIfExists(Paths.get(endpoint.path()));
+            } catch (final IOException e) {
+                abortStart();
+                result.completeExceptionally(e);
+                return;
+            }
+        } else {
+            b.childOption(ChannelOption.SO_KEEPALIVE, true);
+
+            if (reusePortOption != null) {
+                b.option(reusePortOption, true);
+            }
+        }
+
+        final ChannelFuture bindFuture = b.bind(node == 0 ? endpoint.address() : endpoint.address(boundPorts[index]));
+        serverChannels.add(bindFuture.channel());
+
+        bindFuture.addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                abortStart();
+                result.completeExceptionally(future.cause());
+                return;
+            }
+
+            if (!endpoint.isDomainSocket()) {
+                boundPorts[index] = ((InetSocketAddress) future.channel().localAddress()).getPort();
+            }
+            bind(task + 1, boundPorts, metricsHandler, result);
+        });
+    }
+
+    private void abortStart() {
+        for (final Channel crtChannel : serverChannels) {
+            crtChannel.close();
+        }
+
+        for (int i = 0; i < bossGroups.length; i++) {
+            workerGroups[i].shutdownGracefully();
+            bossGroups[i].shutdownGracefully();
+        }
+    }
+
+    private boolean acquireConnection(final Channel channel) {
+        if (openConnections.incrementAndGet() > maxConnections) {
+            openConnections.decrementAndGet();
+            channel.close();
+
+            if (logger.isTraceEnabled()) {
+                logger.trace("Connection limit reached, rejecting " + channel.remoteAddress());
+            }
+            return false;
+        }
+
+        channel.closeFuture().addListener(connectionReleaser);
+        return true;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        close(shutdownTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void close(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (!isClosing.compareAndSet(false, true)) {
+            terminated.await();
+            return;
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
 
         try {
-            final ServerBootstrap b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        public void initChannel(final SocketChannel ch) {
-                            if (sslContext != null) {
-                                ch.pipeline().addLast(sslContext.newHandler(ch.alloc()));
-                            }
-
-                            ch.pipeline()
-                                    .addLast(new HttpRequestDecoder(maxInitialLineLength, maxHeaderSize, maxChunkSize,
-                                            enableHeaderValidation));
-
-                            ch.pipeline().addLast(new NettyHttpHandler(listenerPool, logger));
-                        }
-                    })
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
-
-            final ChannelFuture f = b.bind(port).sync();
-
-            f.channel().closeFuture().sync();
+            if (serverChannels.isEmpty()) {
+                return;
+            }
+
+            for (final Channel crtChannel : serverChannels) {
+                crtChannel.close().await(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            }
+            drainConnections(deadline);
         } finally {
-            workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
+            shutdownGroups(deadline);
+            terminated.countDown();
         }
     }
 
-    @Override
-    public void close() throws Exception {
+    private void drainConnections(final long deadline) throws InterruptedException {
+        for (final Channel crtChannel : channels) {
+            final Http2FrameCodec http2Codec = crtChannel.pipeline().get(Http2FrameCodec.class);
+
+            if (http2Codec != null) {
+                closeHttp2(crtChannel, http2Codec, TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadline)));
+            } else if (crtChannel.pipeline().get(HTTP1_HANDLER_NAME) != null) {
+                crtChannel.pipeline().fireUserEventTriggered(NettyHttpHandler.DRAIN_EVENT);
+            } else {
+                crtChannel.close();
+            }
+        }
+
+        if (channels.newCloseFuture().await(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+            return;
+        }
+
+        if (logger.isWarnEnabled()) {
+            logger.warn("Closing " + channels.size() + " connections which did not finish in time");
+        }
+
+        for (final Channel crtChannel : channels) {
+            final Http2FrameCodec http2Codec = crtChannel.pipeline().get(Http2FrameCodec.class);
+
+            if (http2Codec != null) {
+                closeHttp2(crtChannel, http2Codec, 0);
+            }
+        }
+
+        channels.close();
+    }
+
+    private static void closeHttp2(final Channel channel, final Http2FrameCodec http2Codec,
+            final long gracefulTimeoutMillis) {
+        channel.eventLoop().execute(() -> {
+            http2Codec.gracefulShutdownTimeoutMillis(gracefulTimeoutMillis);
+            channel.close();
+        });
+    }
+
+    private void shutdownGroups(final long deadline) throws InterruptedException {
+        if (workerGroups == null) {
+            return;
+        }
+
+        for (int i = 0; i < workerGroups.length; i++) {
+            workerGroups[i].shutdownGracefully(0, remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            bossGroups[i].shutdownGracefully(0, remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        }
+
+        for (int i = 0; i < workerGroups.length; i++) {
+            workerGroups[i].awaitTermination(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            bossGroups[i].awaitTermination(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        }
+
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    private static long remainingNanos(final long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChannelOption<Boolean> reusePortOption() {
+        try {
+            return NioChannelOption.of(
+                    (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null));
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private void startTicketKeyRotation(final EventLoopGroup group) {
+        if (sslContext == null || ticketKeyRotationPeriodNanos <= 0) {
+            return;
+        }
+
+        if (!(sslContext.sessionContext() instanceof OpenSslSessionContext)) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Session ticket key rotation requires the OpenSSL provider and is disabled");
+            }
+            return;
+        }
+
+        final NettySessionTicketKeyRotator rotator =
+                new NettySessionTicketKeyRotator((OpenSslSessionContext) sslContext.sessionContext());
+        rotator.run();
+        group.scheduleAtFixedRate(rotator, ticketKeyRotationPeriodNanos, ticketKeyRotationPeriodNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    private void addHttp1Handlers(final ChannelPipeline pipeline, final NettyEndpoint endpoint) {
+        pipeline.addLast(HTTP1_DECODER_NAME, newRequestDecoder());
+        addTimeoutHandler(pipeline);
+        pipeline.addLast(HTTP1_HANDLER_NAME, newHandler(endpoint, isKeepAliveEnabled, false));
+    }
+
+    private void addCleartextHandlers(final ChannelPipeline pipeline, final NettyEndpoint endpoint) {
+        final HttpServerUpgradeHandler.UpgradeCodecFactory upgradeCodecFactory = protocol ->
+                Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME.contentEquals(protocol) ?
+                        new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(),
+                                newHttp2Handlers(endpoint)) :
+                        null;
+        final NettyHttpUpgradeCodec upgradeCodec =
+                new NettyHttpUpgradeCodec(HTTP1_DECODER_NAME, HTTP1_TIMEOUT_HANDLER_NAME, HTTP1_HANDLER_NAME);
+
+        pipeline.addLast(new NettyHttp2PriorKnowledgeHandler(ctx -> switchToHttp2(ctx, endpoint)));
+        pipeline.addLast(HTTP1_DECODER_NAME, newRequestDecoder());
+        addTimeoutHandler(pipeline);
+        pipeline.addLast(HTTP1_UPGRADE_CODEC_NAME, upgradeCodec);
+        pipeline.addLast(HTTP1_UPGRADE_HANDLER_NAME,
+                new HttpServerUpgradeHandler(upgradeCodec, upgradeCodecFactory, MAX_UPGRADE_CONTENT_LENGTH));
+        pipeline.addLast(HTTP1_HANDLER_NAME, newHandler(endpoint, isKeepAliveEnabled, false));
+    }
+
+    private void addTimeoutHandler(final ChannelPipeline pipeline) {
+        if (timer != null) {
+            pipeline.addLast(HTTP1_TIMEOUT_HANDLER_NAME, new NettyTimeoutHandler(timer, idleTimeoutNanos,
+                    headerReadTimeoutNanos, bodyReadTimeoutNanos, writeTimeoutNanos, errorResponses));
+        }
+    }
+
+    private void switchToHttp2(final ChannelHandlerContext ctx, final NettyEndpoint endpoint) {
+        final ChannelPipeline pipeline = ctx.pipeline();
+
+        pipeline.remove(HTTP1_DECODER_NAME);
+        pipeline.remove(HTTP1_UPGRADE_CODEC_NAME);
+        pipeline.remove(HTTP1_UPGRADE_HANDLER_NAME);
+        pipeline.remove(HTTP1_HANDLER_NAME);
+
+        if (pipeline.get(HTTP1_TIMEOUT_HANDLER_NAME) != null) {
+            pipeline.remove(HTTP1_TIMEOUT_HANDLER_NAME);
+        }
+
+        pipeline.addLast(Http2FrameCodecBuilder.forServer().build());
+        pipeline.addLast(newHttp2Handlers(endpoint));
+    }
+
+    private ChannelHandler[] newHttp2Handlers(final NettyEndpoint endpoint) {
+        final long connectionTimeoutNanos = idleTimeoutNanos > 0 ? idleTimeoutNanos : headerReadTimeoutNanos;
+
+        if (timer == null || connectionTimeoutNanos <= 0) {
+            return new ChannelHandler[] {newMultiplexHandler(endpoint, null)};
+        }
+
+        final NettyHttp2ConnectionTimeoutHandler connectionTimeout =
+                new NettyHttp2ConnectionTimeoutHandler(timer, connectionTimeoutNanos);
+        return new ChannelHandler[] {connectionTimeout, newMultiplexHandler(endpoint, connectionTimeout)};
+    }
+
+    private Http2MultiplexHandler newMultiplexHandler(final NettyEndpoint endpoint,
+            final NettyHttp2ConnectionTimeoutHandler connectionTimeout) {
+        return new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(final Channel stream) {
+                if (connectionTimeout != null) {
+                    connectionTimeout.onStreamOpened();
+                    stream.closeFuture().addListener(future -> connectionTimeout.onStreamClosed());
+                }
+
+                stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true),
+                        new NettyHttp2ResponseAdapter());
+
+                if (timer != null) {
+                    stream.pipeline().addLast(new NettyTimeoutHandler(timer, 0, headerReadTimeoutNanos,
+                            bodyReadTimeoutNanos, writeTimeoutNanos, errorResponses));
+                }
+
+                stream.pipeline().addLast(newHandler(endpoint, false, true));
+            }
+        });
+    }
+
+    private HttpRequestDecoder newRequestDecoder() {
+        return new HttpRequestDecoder(maxInitialLineLength, maxHeaderSize, maxChunkSize, enableHeaderValidation);
+    }
+
+    private NettyHttpHandler newHandler(final NettyEndpoint endpoint, final boolean isKeepAlive,
+            final boolean isHttp2Stream) {
+        return new NettyHttpHandler(endpoint.listenerPool(), logger, metrics, tracer, errorResponses,
+                multipartOptions, rateLimiter, isKeepAlive, isHttp2Stream, false, virtualHosts);
+    }
+
+    private final class NettyProtocolNegotiationHandler extends ApplicationProtocolNegotiationHandler {
+        private final NettyEndpoint endpoint;
+
+        private NettyProtocolNegotiationHandler(final NettyEndpoint endpoint) {
+            super(ApplicationProtocolNames.HTTP_1_1);
+            this.endpoint = endpoint;
+        }
 
+        @Override
+        protected void configurePipeline(final ChannelHandlerContext ctx, final String protocol) {
+            if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                ctx.pipeline().addLast(Http2FrameCodecBuilder.forServer().build());
+                ctx.pipeline().addLast(newHttp2Handlers(endpoint));
+            } else {
+                addHttp1Handlers(ctx.pipeline(), endpoint);
+            }
+        }
     }
 
     public static class NettyHttpServerBuilder {
-        private int port;
-        private Pool<HttpRequestListener> listenerPool;
+        private List<NettyEndpoint> endpoints;
+        private final List<NettyEndpoint> extraEndpoints = new ArrayList<>();
+        private boolean isNativeTransportPreferred;
+        private boolean isNativeTransport;
+        private NettyWarmUp warmUp;
+        private final List<byte[]> warmUpRequests = new ArrayList<>();
+        private int warmUpIterations = 10_000;
+        private int listenerPoolSize;
+        private boolean isKeepAliveEnabled;
+        private final Map<String, Supplier<HttpRequestListener>> virtualHostSuppliers = new LinkedHashMap<>();
+        private NettyVirtualHosts virtualHosts;
 
         private int maxInitialLineLength = 4096;
         private int maxHeaderSize = 8192;
@@ -123,7 +663,34 @@ public class NettyHttpServer implements AutoCloseable {
         private boolean enableHeaderValidation;
         private int workerThreadsAmount = 0;
         private SslContext sslContext;
+        private SslContextBuilder sslContextBuilder;
         private Logger logger;
+        private ServerMetrics metrics;
+        private RequestTracer tracer;
+        private ErrorFormat errorFormat = ErrorFormat.TEXT;
+        private boolean isErrorStackTraceEnabled;
+        private int multipartFieldThreshold = 16384;
+        private int multipartSpoolThreshold;
+        private Path multipartSpoolDirectory;
+        private boolean isHttp2Enabled;
+        private boolean isOpenSslPreferred;
+        private long sessionCacheSize;
+        private long sessionTimeoutSeconds;
+        private long ticketKeyRotationPeriodNanos;
+        private List<String> ciphers;
+        private long shutdownTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+        private long idleTimeoutNanos;
+        private long headerReadTimeoutNanos;
+        private long bodyReadTimeoutNanos;
+        private long writeTimeoutNanos;
+        private int maxConnections;
+        private RateLimiter rateLimiter;
+        private final List<NettyEventLoopNode> nodes = new ArrayList<>();
+        private String threadNamePrefix = "needle";
+        private int threadPriority = Thread.NORM_PRIORITY;
+        private CpuAffinity cpuAffinity;
+        private ChannelOption<Boolean> reusePortOption;
+        private String[] tlsProtocols;
 
         public NettyHttpServerBuilder withMaxInitialLineLength(final int maxInitialLineLength) {
             this.maxInitialLineLength = maxInitialLineLength;
@@ -154,7 +721,8 @@ public class NettyHttpServer implements AutoCloseable {
             if (certificate == null || key == null) {
                 throw new IllegalArgumentException("Certificate and key must not be null!");
             }
-            sslContext = SslContextBuilder.forServer(certificate, key).build();
+            sslContextBuilder = SslContextBuilder.forServer(certificate, key);
+            sslContext = sslContextBuilder.build();
 
             return this;
         }
@@ -164,15 +732,184 @@ public class NettyHttpServer implements AutoCloseable {
             if (certificate == null || key == null) {
                 throw new IllegalArgumentException("Certificate and key must not be null!");
             }
-            sslContext = SslContextBuilder.forServer(certificate, key).build();
+            sslContextBuilder = SslContextBuilder.forServer(certificate, key);
+            sslContext = sslContextBuilder.build();
 
             return this;
         }
 
         public NettyHttpServerBuilder withSelfSignedSSL() throws CertificateException, SSLException {
             final SelfSignedCertificate ssc = new SelfSignedCertificate();
-            sslContext = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey()).build();
+            sslContextBuilder = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey());
+            sslContext = sslContextBuilder.build();
+
+            return this;
+        }
+
+        public NettyHttpServerBuilder withOpenSsl() {
+            this.isOpenSslPreferred = true;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withSessionCache(final long size, final long timeout, final TimeUnit unit) {
+            this.sessionCacheSize = size;
+            this.sessionTimeoutSeconds = unit.toSeconds(timeout);
+            return this;
+        }
+
+        public NettyHttpServerBuilder withSessionTicketKeyRotation(final long period, final TimeUnit unit) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("Rotation period must be positive!");
+            }
+            this.ticketKeyRotationPeriodNanos = unit.toNanos(period);
+            return this;
+        }
+
+        public NettyHttpServerBuilder withCiphers(final String... ciphers) {
+            this.ciphers = Arrays.asList(ciphers.clone());
+            return this;
+        }
+
+        public NettyHttpServerBuilder withTlsProtocols(final String... protocols) {
+            this.tlsProtocols = protocols.clone();
+            return this;
+        }
+
+        public NettyHttpServerBuilder withShutdownTimeout(final long timeout, final TimeUnit unit) {
+            this.shutdownTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public NettyHttpServerBuilder withMaxConnections(final int maxConnections) {
+            if (maxConnections <= 0) {
+                throw new IllegalArgumentException("Max connections must be positive!");
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withThreadNamePrefix(final String threadNamePrefix) {
+            this.threadNamePrefix = threadNamePrefix;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withThreadPriority(final int threadPriority) {
+            if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY) {
+                throw new IllegalArgumentException("Thread priority must be within [" + Thread.MIN_PRIORITY + ", " +
+                        Thread.MAX_PRIORITY + "]!");
+            }
+            this.threadPriority = threadPriority;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withCpuAffinity(final CpuAffinity cpuAffinity) {
+            this.cpuAffinity = cpuAffinity;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withEventLoopNode(final int[] bossCpus, final int[] workerCpus) {
+            nodes.add(new NettyEventLoopNode(bossCpus, workerCpus));
+            return this;
+        }
+
+        public NettyHttpServerBuilder withEndpoint(final InetSocketAddress address,
+                final Supplier<HttpRequestListener> supplier) {
+            extraEndpoints.add(new NettyEndpoint(address, supplier, false));
+            return this;
+        }
+
+        public NettyHttpServerBuilder withTlsEndpoint(final InetSocketAddress address,
+                final Supplier<HttpRequestListener> supplier) {
+            extraEndpoints.add(new NettyEndpoint(address, supplier, true));
+            return this;
+        }
+
+        public NettyHttpServerBuilder withDomainSocketEndpoint(final String path,
+                final Supplier<HttpRequestListener> supplier) {
+            if (path == null) {
+                throw new IllegalArgumentException("Socket path must not be null!");
+            }
+            extraEndpoints.add(new NettyEndpoint(new DomainSocketAddress(path), supplier, false));
+            return this;
+        }
+
+        public NettyHttpServerBuilder withVirtualHost(final String host, final Supplier<HttpRequestListener> supplier) {
+            if (host == null || supplier == null) {
+                throw new IllegalArgumentException("Virtual host and listener supplier must not be null!");
+            }
+
+            final String name = NettyVirtualHosts.normalize(host);
+            if (virtualHostSuppliers.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate virtual host: " + host);
+            }
+            virtualHostSuppliers.put(name, supplier);
+            return this;
+        }
+
+        public NettyHttpServerBuilder withNativeTransport() {
+            this.isNativeTransportPreferred = true;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withListenerPoolSize(final int listenerPoolSize) {
+            if (listenerPoolSize < 0) {
+                throw new IllegalArgumentException("Listener pool size must not be negative!");
+            }
+            this.listenerPoolSize = listenerPoolSize;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withWarmUpRequest(final String method, final String uri) {
+            return withWarmUpRequest(method, uri, null, null);
+        }
+
+        /**
+         * Adds a request that is replayed through the real listeners before the server starts listening.
+         * Warm-up requests bypass route caches and single-flight, but any other side effect of the handlers
+         * happens on every iteration, so warm-up requests must be safe to repeat.
+         */
+        public NettyHttpServerBuilder withWarmUpRequest(final String method, final String uri,
+                final String contentType, final byte[] body) {
+            if (method == null || uri == null) {
+                throw new IllegalArgumentException("Warm-up method and uri must not be null!");
+            }
+            if (body != null && contentType == null) {
+                throw new IllegalArgumentException("Warm-up request with a body must have a content type!");
+            }
+            warmUpRequests.add(NettyWarmUp.request(method, uri, contentType, body));
+            return this;
+        }
+
+        public NettyHttpServerBuilder withWarmUpIterations(final int warmUpIterations) {
+            if (warmUpIterations <= 0) {
+                throw new IllegalArgumentException("Warm-up iterations must be positive!");
+            }
+            this.warmUpIterations = warmUpIterations;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withRateLimiter(final RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withIdleTimeout(final long timeout, final TimeUnit unit) {
+            this.idleTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public NettyHttpServerBuilder withHeaderReadTimeout(final long timeout, final TimeUnit unit) {
+            this.headerReadTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
 
+        public NettyHttpServerBuilder withBodyReadTimeout(final long timeout, final TimeUnit unit) {
+            this.bodyReadTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public NettyHttpServerBuilder withWriteTimeout(final long timeout, final TimeUnit unit) {
+            this.writeTimeoutNanos = unit.toNanos(timeout);
             return this;
         }
 
@@ -181,14 +918,171 @@ public class NettyHttpServer implements AutoCloseable {
             return this;
         }
 
+        public NettyHttpServerBuilder withMetrics(final ServerMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withTracer(final RequestTracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withErrorFormat(final ErrorFormat errorFormat) {
+            if (errorFormat == null) {
+                throw new IllegalArgumentException("Error format must not be null!");
+            }
+            this.errorFormat = errorFormat;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withErrorStackTraces() {
+            this.isErrorStackTraceEnabled = true;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withMultipartFieldThreshold(final int multipartFieldThreshold) {
+            this.multipartFieldThreshold = multipartFieldThreshold;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withMultipartSpool(final int multipartSpoolThreshold) {
+            return withMultipartSpool(multipartSpoolThreshold, null);
+        }
+
+        public NettyHttpServerBuilder withMultipartSpool(final int multipartSpoolThreshold,
+                final Path multipartSpoolDirectory) {
+            if (multipartSpoolThreshold <= 0) {
+                throw new IllegalArgumentException("Multipart spool threshold must be positive!");
+            }
+            this.multipartSpoolThreshold = multipartSpoolThreshold;
+            this.multipartSpoolDirectory = multipartSpoolDirectory;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withKeepAlive() {
+            this.isKeepAliveEnabled = true;
+            return this;
+        }
+
+        public NettyHttpServerBuilder withHttp2() {
+            this.isHttp2Enabled = true;
+            return this;
+        }
+
         public NettyHttpServer build(final int port, final Supplier<HttpRequestListener> supplier) {
-            this.port = port;
-            this.listenerPool = new ConcurrentObjectPool<>(supplier);
             if (logger == null) {
                 this.logger = SystemLogger.info();
             }
 
+            this.endpoints = new ArrayList<>(extraEndpoints.size() + 1);
+            endpoints.add(new NettyEndpoint(new InetSocketAddress(port), supplier, sslContextBuilder != null)
+                    .pooled(metrics));
+
+            boolean hasDomainSockets = false;
+            for (final NettyEndpoint endpoint : extraEndpoints) {
+                if (endpoint.isTls() && sslContextBuilder == null) {
+                    throw new IllegalStateException("TLS endpoints need a certificate, configure it with withSSL");
+                }
+                hasDomainSockets |= endpoint.isDomainSocket();
+                endpoints.add(endpoint.pooled(metrics));
+            }
+
+            isNativeTransport = isNativeTransport(hasDomainSockets);
+
+            if (!virtualHostSuppliers.isEmpty()) {
+                virtualHosts = new NettyVirtualHosts(virtualHostSuppliers, metrics);
+            }
+
+            if (listenerPoolSize > 0 || !warmUpRequests.isEmpty()) {
+                warmUp = new NettyWarmUp(warmUpRequests, warmUpIterations, listenerPoolSize);
+            }
+
+            if (sslContextBuilder != null) {
+                sslContext = buildSslContext();
+            }
+
+            if (cpuAffinity == null) {
+                for (final NettyEventLoopNode node : nodes) {
+                    if (node.bossCpus() != null || node.workerCpus() != null) {
+                        cpuAffinity = CpuAffinity.taskset();
+                        break;
+                    }
+                }
+            }
+
+            if (nodes.size() > 1) {
+                reusePortOption = isNativeTransport ? EpollChannelOption.SO_REUSEPORT : reusePortOption();
+
+                if (reusePortOption == null) {
+                    throw new IllegalStateException("Several event loop nodes need SO_REUSEPORT, which this JDK " +
+                            "does not support");
+                }
+            }
+
             return new NettyHttpServer(this);
         }
+
+        private boolean isNativeTransport(final boolean hasDomainSockets) {
+            if (Epoll.isAvailable()) {
+                return hasDomainSockets || isNativeTransportPreferred;
+            }
+
+            if (hasDomainSockets) {
+                throw new IllegalStateException("Unix domain socket endpoints need the native epoll transport",
+                        Epoll.unavailabilityCause());
+            }
+
+            if (isNativeTransportPreferred && logger.isWarnEnabled()) {
+                logger.warn("Native epoll transport is not available, falling back to NIO: " +
+                        Epoll.unavailabilityCause());
+            }
+            return false;
+        }
+
+        private SslContext buildSslContext() {
+            if (isOpenSslPreferred) {
+                if (OpenSsl.isAvailable()) {
+                    sslContextBuilder.sslProvider(SslProvider.OPENSSL);
+                } else {
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("OpenSSL is not available, falling back to the JDK provider: " +
+                                OpenSsl.unavailabilityCause());
+                    }
+                    sslContextBuilder.sslProvider(SslProvider.JDK);
+                }
+            }
+
+            if (ciphers != null) {
+                sslContextBuilder.ciphers(ciphers, SupportedCipherSuiteFilter.INSTANCE);
+            }
+
+            if (tlsProtocols != null) {
+                sslContextBuilder.protocols(tlsProtocols);
+            }
+
+            if (sessionCacheSize > 0) {
+                sslContextBuilder.sessionCacheSize(sessionCacheSize);
+            }
+
+            if (sessionTimeoutSeconds > 0) {
+                sslContextBuilder.sessionTimeout(sessionTimeoutSeconds);
+            }
+
+            if (isHttp2Enabled) {
+                sslContextBuilder.applicationProtocolConfig(new ApplicationProtocolConfig(
+                        ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        ApplicationProtocolNames.HTTP_2,
+                        ApplicationProtocolNames.HTTP_1_1));
+            }
+
+            try {
+                return sslContextBuilder.build();
+            } catch (final SSLException e) {
+                throw new IllegalStateException("Unable to build SSL context", e);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+final class NettyHttpUpgradeCodec extends ChannelOutboundHandlerAdapter
+        implements HttpServerUpgradeHandler.SourceCodec {
+    private static final String EOL = "\r\n";
+
+    private final String[] http1HandlerNames;
+
+    NettyHttpUpgradeCodec(final String... http1HandlerNames) {
+        this.http1HandlerNames = http1HandlerNames;
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+        if (!(msg instanceof HttpResponse)) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final HttpResponse response = (HttpResponse) msg;
+        final StringBuilder head = new StringBuilder()
+                .append(response.protocolVersion()).append(' ').append(response.status()).append(EOL);
+
+        for (final Map.Entry<String, String> header : response.headers()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append(EOL);
+        }
+        head.append(EOL);
+
+        ReferenceCountUtil.release(msg);
+
+        final ByteBuf buf = ctx.alloc().buffer(head.length());
+        buf.writeCharSequence(head, StandardCharsets.US_ASCII);
+        ctx.write(buf, promise);
+    }
+
+    @Override
+    public void upgradeFrom(final ChannelHandlerContext ctx) {
+        for (final String name : http1HandlerNames) {
+            if (ctx.pipeline().get(name) != null) {
+                ctx.pipeline().remove(name);
+            }
+        }
+
+        ctx.pipeline().remove(this);
+    }
+}
@@ -0,0 +1,564 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class NettyMultipartParser {
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DASH = '-';
+    private static final char QUOTE = '"';
+    private static final char BACKSLASH = '\\';
+    private static final String MULTIPART_PREFIX = "multipart/";
+    private static final String BOUNDARY_NAME = "boundary";
+    private static final String CONTENT_DISPOSITION_HEADER_NAME = "Content-Disposition";
+    private static final String CONTENT_TYPE_HEADER_NAME = "Content-Type";
+    private static final String NAME_PARAMETER = "name";
+    private static final String FILE_NAME_PARAMETER = "filename";
+    private static final String SPOOL_FILE_PREFIX = "needle-part-";
+    private static final String SPOOL_FILE_SUFFIX = ".tmp";
+    private static final int MAX_HEADER_LINE_LENGTH = 8192;
+    private static final int SPOOL_CHUNK_SIZE = 8192;
+
+    private enum State {
+        PREAMBLE, DELIMITER_SUFFIX, HEADERS, CONTENT, EPILOGUE
+    }
+
+    interface Listener {
+
+        void onField(CharSequence name, CharSequence value);
+
+        void onPartStarted(CharSequence name, CharSequence fileName, CharSequence contentType);
+
+        void onPartContent(ByteBuf content);
+
+        void onPartFinished();
+
+        void onError(Throwable exception);
+    }
+
+    private final Listener listener;
+    private final int fieldThreshold;
+    private final int spoolThreshold;
+    private final Path spoolDirectory;
+
+    private byte[] delimiter;
+    private State state;
+    private ByteBuf input;
+    private ByteBuf cumulation;
+    private ByteBuf fieldContent;
+    private ByteBuf spoolContent;
+    private Path spoolFile;
+    private FileChannel spoolChannel;
+    private long spoolSize;
+    private boolean isField;
+    private String partName;
+    private String fileName;
+    private String partContentType;
+
+    NettyMultipartParser(final Listener listener, final NettyMultipartOptions options) {
+        this.listener = listener;
+        this.fieldThreshold = options.fieldThreshold();
+        this.spoolThreshold = options.spoolThreshold();
+        this.spoolDirectory = options.spoolDirectory();
+    }
+
+    static String boundaryOf(final String contentType) {
+        if (contentType == null || !contentType.regionMatches(true, 0, MULTIPART_PREFIX, 0,
+                MULTIPART_PREFIX.length())) {
+            return null;
+        }
+
+        final String boundary = parameterOf(contentType, BOUNDARY_NAME);
+        return boundary == null || boundary.isEmpty() ? null : boundary;
+    }
+
+    void reset(final String boundary) {
+        final byte[] boundaryBytes = boundary.getBytes(StandardCharsets.US_ASCII);
+
+        delimiter = new byte[boundaryBytes.length + 4];
+        delimiter[0] = CR;
+        delimiter[1] = LF;
+        delimiter[2] = DASH;
+        delimiter[3] = DASH;
+        System.arraycopy(boundaryBytes, 0, delimiter, 4, boundaryBytes.length);
+
+        state = State.PREAMBLE;
+        isField = false;
+        clearPart();
+        closeSpool();
+
+        if (cumulation != null) {
+            cumulation.clear();
+        }
+    }
+
+    void offer(final ByteBufAllocator allocator, final ByteBuf content) {
+        if (state == State.EPILOGUE || !content.isReadable()) {
+            return;
+        }
+
+        if (cumulation == null) {
+            cumulation = allocator.buffer();
+            fieldContent = allocator.buffer();
+            spoolContent = allocator.buffer();
+        }
+
+        final int readerIndex = content.readerIndex();
+
+        if (cumulation.isReadable()) {
+            final int bridged = Math.min(content.readableBytes(), delimiter.length);
+            cumulation.writeBytes(content, readerIndex, bridged);
+            parse(cumulation);
+
+            final int unread = cumulation.readableBytes();
+            if (unread <= bridged) {
+                cumulation.clear();
+                content.skipBytes(bridged - unread);
+            } else {
+                cumulation.writeBytes(content, readerIndex + bridged, content.readableBytes() - bridged);
+                content.skipBytes(content.readableBytes());
+                parse(cumulation);
+            }
+        }
+
+        if (!cumulation.isReadable()) {
+            parse(content);
+            cumulation.writeBytes(content);
+        }
+
+        cumulation.discardSomeReadBytes();
+        content.readerIndex(readerIndex);
+        input = null;
+    }
+
+    void finish() {
+        if (state != State.EPILOGUE) {
+            fail("Multipart body ended before the closing boundary");
+        }
+    }
+
+    void release() {
+        closeSpool();
+
+        if (cumulation != null) {
+            cumulation.release();
+            cumulation = null;
+        }
+
+        if (fieldContent != null) {
+            fieldContent.release();
+            fieldContent = null;
+        }
+
+        if (spoolContent != null) {
+            spoolContent.release();
+            spoolContent = null;
+        }
+    }
+
+    private void parse(final ByteBuf buffer) {
+        input = buffer;
+
+        boolean hasProgress = true;
+        while (hasProgress) {
+            switch (state) {
+                case PREAMBLE:
+                    hasProgress = parsePreamble();
+                    break;
+                case DELIMITER_SUFFIX:
+                    hasProgress = parseDelimiterSuffix();
+                    break;
+                case HEADERS:
+                    hasProgress = parseHeaderLine();
+                    break;
+                case CONTENT:
+                    hasProgress = parseContent();
+                    break;
+                default:
+                    input.skipBytes(input.readableBytes());
+                    hasProgress = false;
+            }
+        }
+    }
+
+    private boolean parsePreamble() {
+        final int index = indexOfDelimiter(input.readerIndex(), 2);
+        if (index < 0) {
+            final int toKeep = delimiter.length - 3;
+            if (input.readableBytes() > toKeep) {
+                input.skipBytes(input.readableBytes() - toKeep);
+            }
+
+            return false;
+        }
+
+        input.readerIndex(index + delimiter.length - 2);
+        state = State.DELIMITER_SUFFIX;
+
+        return true;
+    }
+
+    private boolean parseDelimiterSuffix() {
+        if (input.readableBytes() < 2) {
+            return false;
+        }
+
+        final byte first = input.getByte(input.readerIndex());
+        final byte second = input.getByte(input.readerIndex() + 1);
+        input.skipBytes(2);
+
+        if (first == DASH && second == DASH) {
+            state = State.EPILOGUE;
+        } else if (first == CR && second == LF) {
+            state = State.HEADERS;
+        } else {
+            fail("Malformed multipart boundary");
+        }
+
+        return true;
+    }
+
+    private boolean parseHeaderLine() {
+        final int start = input.readerIndex();
+        final int lineFeed = indexOfLineFeed(start);
+
+        if (lineFeed < 0) {
+            if (input.readableBytes() > MAX_HEADER_LINE_LENGTH) {
+                fail("Multipart header line is too long");
+                return true;
+            }
+
+            return false;
+        }
+
+        final int end = lineFeed > start && input.getByte(lineFeed - 1) == CR ? lineFeed - 1 : lineFeed;
+        input.readerIndex(lineFeed + 1);
+
+        if (end == start) {
+            startPart();
+            state = State.CONTENT;
+        } else {
+            parseHeader(input.toString(start, end - start, StandardCharsets.UTF_8));
+        }
+
+        return true;
+    }
+
+    private boolean parseContent() {
+        final int start = input.readerIndex();
+        final int index = indexOfDelimiter(start, 0);
+
+        if (index >= 0) {
+            appendContent(start, index - start);
+            finishPart();
+
+            input.readerIndex(index + delimiter.length);
+            if (state == State.CONTENT) {
+                state = State.DELIMITER_SUFFIX;
+            }
+
+            return true;
+        }
+
+        final int safeEnd = input.writerIndex() - delimiter.length + 1;
+        if (safeEnd > start) {
+            appendContent(start, safeEnd - start);
+            input.readerIndex(safeEnd);
+        }
+
+        return false;
+    }
+
+    private void parseHeader(final String line) {
+        final int colon = line.indexOf(':');
+        if (colon <= 0) {
+            return;
+        }
+
+        final String name = line.substring(0, colon).trim();
+        final String value = line.substring(colon + 1).trim();
+
+        if (CONTENT_DISPOSITION_HEADER_NAME.equalsIgnoreCase(name)) {
+            partName = parameterOf(value, NAME_PARAMETER);
+            fileName = parameterOf(value, FILE_NAME_PARAMETER);
+        } else if (CONTENT_TYPE_HEADER_NAME.equalsIgnoreCase(name)) {
+            partContentType = value;
+        }
+    }
+
+    private void startPart() {
+        if (partName != null && fileName == null) {
+            isField = true;
+            fieldContent.clear();
+            return;
+        }
+
+        listener.onPartStarted(partName, fileName, partContentType);
+    }
+
+    private void appendContent(final int index, final int length) {
+        if (length == 0 || state != State.CONTENT) {
+            return;
+        }
+
+        if (isField) {
+            if (fieldContent.readableBytes() + length <= fieldThreshold) {
+                fieldContent.writeBytes(input, index, length);
+                return;
+            }
+
+            isField = false;
+            listener.onPartStarted(partName, null, partContentType);
+
+            if (fieldContent.isReadable()) {
+                deliverContent(fieldContent, fieldContent.readerIndex(), fieldContent.readableBytes());
+                fieldContent.clear();
+            }
+        }
+
+        deliverContent(input, index, length);
+    }
+
+    private void deliverContent(final ByteBuf buffer, final int index, final int length) {
+        if (spoolThreshold <= 0) {
+            listener.onPartContent(buffer.slice(index, length));
+            return;
+        }
+
+        if (spoolChannel == null && spoolContent.readableBytes() + length <= spoolThreshold) {
+            spoolContent.writeBytes(buffer, index, length);
+            return;
+        }
+
+        try {
+            if (spoolChannel == null) {
+                openSpool();
+            }
+
+            int written = 0;
+            while (written < length) {
+                written += buffer.getBytes(index + written, spoolChannel, spoolSize + written, length - written);
+            }
+            spoolSize += length;
+        } catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    private void openSpool() throws IOException {
+        spoolFile = spoolDirectory == null ?
+                Files.createTempFile(SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX) :
+                Files.createTempFile(spoolDirectory, SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX);
+        spoolChannel = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        spoolSize = 0;
+
+        while (spoolContent.isReadable()) {
+            spoolSize += spoolContent.readBytes(spoolChannel, spoolSize, spoolContent.readableBytes());
+        }
+        spoolContent.clear();
+    }
+
+    private void finishSpool() {
+        if (spoolChannel == null) {
+            if (spoolContent.isReadable()) {
+                listener.onPartContent(spoolContent);
+            }
+            spoolContent.clear();
+            return;
+        }
+
+        try {
+            long position = 0;
+            while (position < spoolSize) {
+                spoolContent.clear();
+                final int read = spoolContent.writeBytes(spoolChannel, position,
+                        (int) Math.min(SPOOL_CHUNK_SIZE, spoolSize - position));
+                if (read < 0) {
+                    throw new IOException("Spooled part is shorter than written: " + spoolFile);
+                }
+
+                position += read;
+                listener.onPartContent(spoolContent);
+            }
+        } catch (final IOException e) {
+            fail(e);
+        } finally {
+            spoolContent.clear();
+            closeSpool();
+        }
+    }
+
+    private void closeSpool() {
+        if (spoolChannel == null) {
+            return;
+        }
+
+        try {
+            spoolChannel.close();
+            Files.deleteIfExists(spoolFile);
+        } catch (final IOException e) {
+            listener.onError(e);
+        }
+
+        spoolChannel = null;
+        spoolFile = null;
+        spoolSize = 0;
+    }
+
+    private void finishPart() {
+        if (state != State.CONTENT) {
+            clearPart();
+            return;
+        }
+
+        if (isField) {
+            isField = false;
+            listener.onField(partName, fieldContent.toString(StandardCharsets.UTF_8));
+            fieldContent.clear();
+        } else {
+            if (spoolThreshold > 0) {
+                finishSpool();
+            }
+
+            if (state == State.CONTENT) {
+                listener.onPartFinished();
+            }
+        }
+
+        clearPart();
+    }
+
+    private void clearPart() {
+        partName = null;
+        fileName = null;
+        partContentType = null;
+    }
+
+    private void fail(final String message) {
+        fail(new IllegalArgumentException(message));
+    }
+
+    private void fail(final Exception exception) {
+        state = State.EPILOGUE;
+        closeSpool();
+        listener.onError(exception);
+    }
+
+    private int indexOfDelimiter(final int from, final int offset) {
+        final int last = input.writerIndex() - delimiter.length + offset;
+
+        for (int i = from; i <= last; i++) {
+            int matched = offset;
+            while (matched < delimiter.length && input.getByte(i + matched - offset) == delimiter[matched]) {
+                matched++;
+            }
+
+            if (matched == delimiter.length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int indexOfLineFeed(final int from) {
+        for (int i = from; i < input.writerIndex(); i++) {
+            if (input.getByte(i) == LF) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    static String parameterOf(final String headerValue, final String parameterName) {
+        int index = headerValue.indexOf(';');
+
+        while (index >= 0) {
+            final int nameStart = index + 1;
+            final int equals = headerValue.indexOf('=', nameStart);
+            final int semicolon = headerValue.indexOf(';', nameStart);
+
+            if (equals < 0) {
+                return null;
+            }
+
+            if (semicolon >= 0 && semicolon < equals) {
+                index = semicolon;
+                continue;
+            }
+
+            final boolean isMatch = headerValue.substring(nameStart, equals).trim().equalsIgnoreCase(parameterName);
+
+            int valueStart = equals + 1;
+            while (valueStart < headerValue.length() && headerValue.charAt(valueStart) == ' ') {
+                valueStart++;
+            }
+
+            if (valueStart < headerValue.length() && headerValue.charAt(valueStart) == QUOTE) {
+                final StringBuilder value = isMatch ? new StringBuilder() : null;
+
+                int i = valueStart + 1;
+                while (i < headerValue.length() && headerValue.charAt(i) != QUOTE) {
+                    if (headerValue.charAt(i) == BACKSLASH && i + 1 < headerValue.length() &&
+                            headerValue.charAt(i + 1) == QUOTE) {
+                        i++;
+                    }
+
+                    if (isMatch) {
+                        value.append(headerValue.charAt(i));
+                    }
+                    i++;
+                }
+
+                if (isMatch) {
+                    return value.toString();
+                }
+
+                index = headerValue.indexOf(';', i);
+            } else {
+                final int end = semicolon < 0 ? headerValue.length() : semicolon;
+
+                if (isMatch) {
+                    return headerValue.substring(valueStart, end).trim();
+                }
+
+                index = semicolon;
+            }
+        }
+
+        return null;
+    }
+}
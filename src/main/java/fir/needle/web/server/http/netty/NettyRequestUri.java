@@ -0,0 +1,167 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+final class NettyRequestUri {
+    private static final int MAX_PARAMETERS = 1024;
+
+    private final Slice path = new Slice();
+    private final Slice name = new Slice();
+    private final Slice value = new Slice();
+    private String uri;
+    private int position;
+    private int limit;
+    private int remainingParameters;
+
+    void reset(final String uri) {
+        this.uri = uri;
+        this.limit = uri.length();
+
+        int pathEnd = 0;
+        while (pathEnd < limit && uri.charAt(pathEnd) != '?' && uri.charAt(pathEnd) != '#') {
+            pathEnd++;
+        }
+        path.set(uri, 0, pathEnd);
+
+        if (pathEnd < limit && uri.charAt(pathEnd) == '?') {
+            final int fragment = uri.indexOf('#', pathEnd);
+            limit = fragment < 0 ? limit : fragment;
+            position = pathEnd + 1;
+        } else {
+            position = limit;
+        }
+
+        remainingParameters = MAX_PARAMETERS;
+    }
+
+    void clear() {
+        uri = null;
+        path.set(null, 0, 0);
+        name.set(null, 0, 0);
+        value.set(null, 0, 0);
+    }
+
+    CharSequence path() {
+        return path;
+    }
+
+    boolean nextParameter() {
+        while (position < limit && remainingParameters > 0) {
+            int nameStart = position;
+            int valueStart = -1;
+            int end = position;
+
+            for (; end < limit; end++) {
+                final char c = uri.charAt(end);
+
+                if (c == '&' || c == ';') {
+                    break;
+                }
+
+                if (c == '=') {
+                    if (nameStart == end) {
+                        nameStart = end + 1;
+                    } else if (valueStart < nameStart) {
+                        valueStart = end + 1;
+                    }
+                }
+            }
+
+            position = end + 1;
+
+            if (nameStart < end) {
+                if (valueStart <= nameStart) {
+                    valueStart = end + 1;
+                }
+
+                name.set(uri, nameStart, valueStart - 1);
+                value.set(uri, Math.min(valueStart, end), end);
+                remainingParameters--;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    CharSequence name() {
+        return decode(name);
+    }
+
+    CharSequence value() {
+        return decode(value);
+    }
+
+    private static CharSequence decode(final Slice slice) {
+        if (slice.indexOf('%') < 0 && slice.indexOf('+') < 0) {
+            return slice;
+        }
+
+        return QueryStringDecoder.decodeComponent(slice.toString());
+    }
+
+    private static final class Slice implements CharSequence {
+        private String source;
+        private int start;
+        private int end;
+
+        void set(final String source, final int start, final int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        int indexOf(final char c) {
+            for (int i = start; i < end; i++) {
+                if (source.charAt(i) == c) {
+                    return i - start;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return source.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            return source.substring(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return source.substring(start, end);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import fir.needle.joint.logging.Logger;
+import fir.needle.web.server.logging.Loggers;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+final class NettyThreadFactory extends DefaultThreadFactory {
+    private final CpuAffinity affinity;
+    private final int[] cpus;
+    private final Logger logger;
+
+    NettyThreadFactory(final String name, final int priority, final CpuAffinity affinity, final int[] cpus,
+            final Logger logger) {
+        super(name, false, priority);
+        this.affinity = affinity;
+        this.cpus = cpus;
+        this.logger = logger;
+    }
+
+    @Override
+    protected Thread newThread(final Runnable r, final String name) {
+        if (affinity == null || cpus == null) {
+            return super.newThread(r, name);
+        }
+
+        return super.newThread(() -> {
+            bind();
+            r.run();
+        }, name);
+    }
+
+    private void bind() {
+        try {
+            affinity.bind(cpus);
+        } catch (final Exception e) {
+            if (logger.isErrorEnabled()) {
+                Loggers.error(logger, e);
+            }
+        }
+    }
+}
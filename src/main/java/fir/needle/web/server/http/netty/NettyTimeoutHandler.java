@@ -0,0 +1,263 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.WriteTimeoutException;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.TimeUnit;
+
+final class NettyTimeoutHandler extends ChannelDuplexHandler implements TimerTask {
+    private static final int IDLE = 0;
+    private static final int HEADERS = 1;
+    private static final int BODY = 2;
+    private static final int PROCESSING = 3;
+    private static final int EXPIRED = 4;
+
+    private final Timer timer;
+    private final long idleTimeoutNanos;
+    private final long headerReadTimeoutNanos;
+    private final long bodyReadTimeoutNanos;
+    private final long writeTimeoutNanos;
+    private final NettyErrorResponses errorResponses;
+    private final ChannelFutureListener writeListener = future -> onWriteCompleted();
+
+    private ChannelHandlerContext context;
+    private Timeout timeout;
+    private long timeoutDeadline;
+    private int phase = -1;
+    private long phaseStartTime;
+    private long lastReadTime;
+    private long lastWriteTime;
+    private int pendingWrites;
+
+    NettyTimeoutHandler(final Timer timer, final long idleTimeoutNanos, final long headerReadTimeoutNanos,
+            final long bodyReadTimeoutNanos, final long writeTimeoutNanos, final NettyErrorResponses errorResponses) {
+        this.timer = timer;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.headerReadTimeoutNanos = headerReadTimeoutNanos;
+        this.bodyReadTimeoutNanos = bodyReadTimeoutNanos;
+        this.writeTimeoutNanos = writeTimeoutNanos;
+        this.errorResponses = errorResponses;
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) {
+        context = ctx;
+
+        if (ctx.channel().isActive()) {
+            enterPhase(IDLE);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) {
+        cancel();
+        phase = EXPIRED;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        if (phase < 0) {
+            enterPhase(IDLE);
+        }
+
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        cancel();
+        phase = EXPIRED;
+
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (msg instanceof HttpRequest && phase != EXPIRED) {
+            enterPhase(BODY);
+        }
+
+        if (msg instanceof HttpContent && phase == BODY) {
+            lastReadTime = System.nanoTime();
+
+            if (msg instanceof LastHttpContent) {
+                enterPhase(PROCESSING);
+            }
+        }
+
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+        if (evt == NettyHttpHandler.KEEP_ALIVE_EVENT && phase != EXPIRED) {
+            enterPhase(IDLE);
+        }
+
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) throws Exception {
+        if (phase == IDLE) {
+            enterPhase(HEADERS);
+        }
+
+        super.channelReadComplete(ctx);
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+        if (writeTimeoutNanos <= 0 || phase == EXPIRED) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final long now = System.nanoTime();
+        if (pendingWrites++ == 0) {
+            lastWriteTime = now;
+        }
+
+        final ChannelPromise tracked = promise.unvoid();
+        tracked.addListener(writeListener);
+
+        final long remaining = writeRemainingNanos(now);
+        if (timeout == null || timeoutDeadline - now > remaining) {
+            cancel();
+            schedule(remaining);
+        }
+
+        ctx.write(msg, tracked);
+    }
+
+    @Override
+    public void run(final Timeout expired) {
+        context.executor().execute(() -> checkExpiry(expired));
+    }
+
+    private void onWriteCompleted() {
+        pendingWrites--;
+        lastWriteTime = System.nanoTime();
+    }
+
+    private void enterPhase(final int newPhase) {
+        phase = newPhase;
+        phaseStartTime = System.nanoTime();
+        lastReadTime = phaseStartTime;
+
+        cancel();
+
+        final long delay = remainingNanos(phaseStartTime);
+        if (delay != Long.MAX_VALUE) {
+            schedule(delay);
+        }
+    }
+
+    private void checkExpiry(final Timeout expired) {
+        if (expired != timeout) {
+            return;
+        }
+
+        timeout = null;
+
+        if (phase == EXPIRED) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        final long readRemaining = readRemainingNanos(now);
+        final long writeRemaining = writeRemainingNanos(now);
+
+        if (readRemaining <= 0) {
+            expireRead();
+        } else if (writeRemaining <= 0) {
+            phase = EXPIRED;
+            context.fireExceptionCaught(WriteTimeoutException.INSTANCE);
+        } else if (readRemaining != Long.MAX_VALUE || writeRemaining != Long.MAX_VALUE) {
+            schedule(Math.min(readRemaining, writeRemaining));
+        }
+    }
+
+    private void expireRead() {
+        final int expiredPhase = phase;
+        phase = EXPIRED;
+
+        if (expiredPhase == IDLE) {
+            context.close();
+        } else if (expiredPhase == HEADERS) {
+            context.writeAndFlush(errorResponses.response(HttpResponseStatus.REQUEST_TIMEOUT).duplicate())
+                    .addListener(ChannelFutureListener.CLOSE);
+        } else {
+            context.fireExceptionCaught(ReadTimeoutException.INSTANCE);
+        }
+    }
+
+    private long remainingNanos(final long now) {
+        return Math.min(readRemainingNanos(now), writeRemainingNanos(now));
+    }
+
+    private long readRemainingNanos(final long now) {
+        switch (phase) {
+            case IDLE:
+                return idleTimeoutNanos > 0 ? phaseStartTime + idleTimeoutNanos - now : Long.MAX_VALUE;
+            case HEADERS:
+                return headerReadTimeoutNanos > 0 ? phaseStartTime + headerReadTimeoutNanos - now : Long.MAX_VALUE;
+            case BODY:
+                return bodyReadTimeoutNanos > 0 ? lastReadTime + bodyReadTimeoutNanos - now : Long.MAX_VALUE;
+            default:
+                return Long.MAX_VALUE;
+        }
+    }
+
+    private long writeRemainingNanos(final long now) {
+        return writeTimeoutNanos > 0 && pendingWrites > 0 ? lastWriteTime + writeTimeoutNanos - now : Long.MAX_VALUE;
+    }
+
+    private void schedule(final long delayNanos) {
+        final long delay = Math.max(delayNanos, 1);
+
+        timeoutDeadline = System.nanoTime() + delay;
+        timeout = timer.newTimeout(this, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancel() {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import fir.needle.joint.colleclions.ConcurrentObjectPool;
+import fir.needle.joint.colleclions.Pool;
+import fir.needle.web.server.http.HttpRequestListener;
+import fir.needle.web.server.metrics.ServerMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+final class NettyVirtualHosts {
+    private static final String WILDCARD_PREFIX = "*.";
+    private static final int HASH_MULTIPLIER = 31;
+
+    private final Entry[] exactHosts;
+    private final Entry[] wildcardHosts;
+    private final boolean hasWildcards;
+    private final List<Pool<HttpRequestListener>> pools = new ArrayList<>();
+
+    NettyVirtualHosts(final Map<String, Supplier<HttpRequestListener>> hosts, final ServerMetrics metrics) {
+        int wildcardsCount = 0;
+        for (final String crtHost : hosts.keySet()) {
+            if (crtHost.startsWith(WILDCARD_PREFIX)) {
+                wildcardsCount++;
+            }
+        }
+
+        this.exactHosts = new Entry[tableSize(hosts.size() - wildcardsCount)];
+        this.wildcardHosts = new Entry[tableSize(wildcardsCount)];
+        this.hasWildcards = wildcardsCount > 0;
+
+        for (final Map.Entry<String, Supplier<HttpRequestListener>> crtHost : hosts.entrySet()) {
+            final Supplier<HttpRequestListener> supplier = crtHost.getValue();
+            final Pool<HttpRequestListener> pool = new ConcurrentObjectPool<>(
+                    metrics == null ? supplier : metrics.listenersPool().instrument(supplier));
+            pools.add(pool);
+
+            if (crtHost.getKey().startsWith(WILDCARD_PREFIX)) {
+                insert(wildcardHosts, crtHost.getKey().substring(WILDCARD_PREFIX.length()), pool);
+            } else {
+                insert(exactHosts, crtHost.getKey(), pool);
+            }
+        }
+    }
+
+    static String normalize(final String host) {
+        final String result = host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+        final String name = result.startsWith(WILDCARD_PREFIX) ? result.substring(WILDCARD_PREFIX.length()) : result;
+
+        if (name.isEmpty() || name.indexOf('*') >= 0 || name.startsWith(".") ||
+                (name.indexOf(':') >= 0 && !(name.startsWith("[") && name.endsWith("]")))) {
+            throw new IllegalArgumentException("Invalid virtual host: " + host);
+        }
+
+        return result.toLowerCase(Locale.ROOT);
+    }
+
+    List<Pool<HttpRequestListener>> pools() {
+        return pools;
+    }
+
+    Pool<HttpRequestListener> find(final CharSequence host, final Pool<HttpRequestListener> defaultPool) {
+        if (host == null) {
+            return defaultPool;
+        }
+
+        final int end = hostEnd(host);
+        Entry wildcard = null;
+        int hash = 0;
+
+        for (int i = end - 1; i >= 0; i--) {
+            final char c = host.charAt(i);
+
+            if (c == '.' && hasWildcards) {
+                final Entry candidate = lookup(wildcardHosts, hash, host, i + 1, end);
+                if (candidate != null) {
+                    wildcard = candidate;
+                }
+            }
+
+            hash = HASH_MULTIPLIER * hash + toLowerCase(c);
+        }
+
+        final Entry exact = lookup(exactHosts, hash, host, 0, end);
+        if (exact != null) {
+            return exact.pool;
+        }
+
+        return wildcard == null ? defaultPool : wildcard.pool;
+    }
+
+    private static int hostEnd(final CharSequence host) {
+        int end = host.length();
+
+        if (end > 0 && host.charAt(0) == '[') {
+            for (int i = 1; i < host.length(); i++) {
+                if (host.charAt(i) == ']') {
+                    end = i + 1;
+                    break;
+                }
+            }
+        } else {
+            for (int i = 0; i < host.length(); i++) {
+                if (host.charAt(i) == ':') {
+                    end = i;
+                    break;
+                }
+            }
+        }
+
+        while (end > 0 && host.charAt(end - 1) == '.') {
+            end--;
+        }
+
+        return end;
+    }
+
+    private static Entry lookup(final Entry[] table, final int hash, final CharSequence host, final int start,
+            final int end) {
+        final int mask = table.length - 1;
+
+        for (int i = spread(hash) & mask; table[i] != null; i = (i + 1) & mask) {
+            if (table[i].hash == hash && table[i].matches(host, start, end)) {
+                return table[i];
+            }
+        }
+
+        return null;
+    }
+
+    private static void insert(final Entry[] table, final String host, final Pool<HttpRequestListener> pool) {
+        final int hash = hashOf(host);
+        final int mask = table.length - 1;
+
+        int i = spread(hash) & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+
+        table[i] = new Entry(host, hash, pool);
+    }
+
+    private static int hashOf(final String host) {
+        int hash = 0;
+
+        for (int i = host.length() - 1; i >= 0; i--) {
+            hash = HASH_MULTIPLIER * hash + host.charAt(i);
+        }
+
+        return hash;
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSize(final int entriesCount) {
+        int result = 2;
+
+        while (result < entriesCount * 2) {
+            result <<= 1;
+        }
+
+        return result;
+    }
+
+    private static char toLowerCase(final char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static final class Entry {
+        private final String host;
+        private final int hash;
+        private final Pool<HttpRequestListener> pool;
+
+        private Entry(final String host, final int hash, final Pool<HttpRequestListener> pool) {
+            this.host = host;
+            this.hash = hash;
+            this.pool = pool;
+        }
+
+        private boolean matches(final CharSequence other, final int start, final int end) {
+            if (end - start != host.length()) {
+                return false;
+            }
+
+            for (int i = 0; i < host.length(); i++) {
+                if (host.charAt(i) != toLowerCase(other.charAt(start + i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
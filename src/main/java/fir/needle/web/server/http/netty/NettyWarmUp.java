@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import fir.needle.joint.colleclions.Pool;
+import fir.needle.web.server.http.HttpRequestListener;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+final class NettyWarmUp {
+    private final List<byte[]> requests;
+    private final int iterations;
+    private final int listenerPoolSize;
+
+    NettyWarmUp(final List<byte[]> requests, final int iterations, final int listenerPoolSize) {
+        this.requests = new ArrayList<>(requests);
+        this.iterations = iterations;
+        this.listenerPoolSize = listenerPoolSize;
+    }
+
+    static byte[] request(final String method, final String uri, final String contentType, final byte[] body) {
+        final StringBuilder head = new StringBuilder()
+                .append(method).append(' ').append(uri).append(" HTTP/1.1\r\n")
+                .append("Host: localhost\r\n");
+
+        if (body != null) {
+            head.append("Content-Type: ").append(contentType).append("\r\n")
+                    .append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("\r\n");
+
+        final byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+        if (body == null) {
+            return headBytes;
+        }
+
+        final byte[] result = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, result, 0, headBytes.length);
+        System.arraycopy(body, 0, result, headBytes.length, body.length);
+
+        return result;
+    }
+
+    boolean hasRequests() {
+        return !requests.isEmpty();
+    }
+
+    void prefill(final Pool<HttpRequestListener> pool) {
+        final HttpRequestListener[] listeners = new HttpRequestListener[listenerPoolSize];
+
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i] = pool.borrow();
+        }
+
+        for (final HttpRequestListener crtListener : listeners) {
+            pool.release(crtListener);
+        }
+    }
+
+    void replay(final Supplier<ChannelHandler[]> pipeline) {
+        for (int i = 0; i < iterations; i++) {
+            for (final byte[] crtRequest : requests) {
+                final EmbeddedChannel channel = new EmbeddedChannel(pipeline.get());
+
+                try {
+                    channel.writeInbound(Unpooled.wrappedBuffer(crtRequest));
+                    channel.runPendingTasks();
+                    releaseOutbound(channel);
+                    channel.checkException();
+                } finally {
+                    channel.finishAndReleaseAll();
+                }
+            }
+        }
+    }
+
+    private static void releaseOutbound(final EmbeddedChannel channel) {
+        for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
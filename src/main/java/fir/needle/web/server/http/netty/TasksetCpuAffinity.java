@@ -0,0 +1,57 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+final class TasksetCpuAffinity implements CpuAffinity {
+    private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+    private static final File DISCARD = new File("/dev/null");
+
+    @Override
+    public void bind(final int[] cpus) throws IOException, InterruptedException {
+        final String threadId = THREAD_SELF.toRealPath().getFileName().toString();
+        final StringBuilder cpuList = new StringBuilder();
+
+        for (int i = 0; i < cpus.length; i++) {
+            if (i > 0) {
+                cpuList.append(',');
+            }
+            cpuList.append(cpus[i]);
+        }
+
+        final Process process = new ProcessBuilder("taskset", "-p", "-c", cpuList.toString(), threadId)
+                .redirectErrorStream(true)
+                .redirectOutput(DISCARD)
+                .start();
+
+        final int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IOException("taskset failed with exit code " + exitCode + " for thread " + threadId);
+        }
+    }
+}
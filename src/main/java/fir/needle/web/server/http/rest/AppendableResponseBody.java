@@ -25,25 +25,45 @@ package fir.needle.web.server.http.rest;
 
 
 import fir.needle.joint.io.ByteAppendable;
+import fir.needle.joint.io.ByteArea;
 import fir.needle.joint.io.CharAppendable;
 import fir.needle.joint.io.CharArea;
 
-class AppendableResponseBody implements CharAppendable {
+class AppendableResponseBody implements CharAppendable, ByteAppendable {
     private ByteAppendable out;
 
-    AppendableResponseBody(final ByteAppendable out) {
+    AppendableResponseBody set(final ByteAppendable out) {
         this.out = out;
+        return this;
     }
 
     @Override
     public void appendChar(final char toAppend) {
-        out.appendByte((byte) toAppend);
+        out().appendByte((byte) toAppend);
     }
 
     @Override
     public void appendArea(final CharArea area, final long startIndex, final long length) {
-        for (long i = startIndex; i < length; i++) {
+        for (long i = startIndex; i < startIndex + length; i++) {
             appendChar(area.getChar(i));
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void appendByte(final byte toAppend) {
+        out().appendByte(toAppend);
+    }
+
+    @Override
+    public void appendArea(final ByteArea area, final long startIndex, final long length) {
+        out().appendArea(area, startIndex, length);
+    }
+
+    private ByteAppendable out() {
+        if (out == null) {
+            throw new IllegalStateException("Response body is used after the response was committed!");
+        }
+
+        return out;
+    }
+}
@@ -60,7 +60,7 @@ class FlyweightCharSequence implements CharSequence {
             throw new IndexOutOfBoundsException();
         }
 
-        return source.subSequence(startIndexInSrc + start, end);
+        return source.subSequence(startIndexInSrc + start, startIndexInSrc + end);
     }
 
     @Override
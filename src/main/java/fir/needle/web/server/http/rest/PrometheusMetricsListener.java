@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+
+import fir.needle.joint.io.CharAppendable;
+import fir.needle.joint.io.CharArea;
+import fir.needle.web.server.metrics.PrometheusFormat;
+import fir.needle.web.server.metrics.ServerMetrics;
+
+public class PrometheusMetricsListener implements RestListener {
+    private final ServerMetrics metrics;
+    private final StringBuilder text = new StringBuilder();
+    private RestResponse response;
+
+    public PrometheusMetricsListener(final ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onRequestStarted(final CharSequence method, final RestResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    public void onParameter(final CharSequence name, final CharSequence value) {
+
+    }
+
+    @Override
+    public void onBodyPart(final CharArea charArea, final long startIndex, final long length) {
+
+    }
+
+    @Override
+    public void onError(final Throwable exception) {
+        response.error().internalServerError(exception).commit();
+        response = null;
+    }
+
+    @Override
+    public void onRequestFinished() {
+        if (response == null) {
+            return;
+        }
+
+        text.setLength(0);
+        PrometheusFormat.write(metrics.snapshot(), text);
+
+        final RestOutputMessage outputMessage = response.success().ok();
+        final CharAppendable body = outputMessage.body(PrometheusFormat.CONTENT_TYPE, text.length());
+        for (int i = 0; i < text.length(); i++) {
+            body.appendChar(text.charAt(i));
+        }
+
+        outputMessage.commit();
+        response = null;
+    }
+}
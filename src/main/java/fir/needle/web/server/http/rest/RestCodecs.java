@@ -0,0 +1,206 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import fir.needle.web.server.codec.Codec;
+import fir.needle.web.server.codec.ValueReader;
+import fir.needle.web.server.codec.ValueWriter;
+import fir.needle.web.server.json.JsonListener;
+
+import java.util.List;
+
+final class RestCodecs {
+    private static final String WILDCARD = "*/*";
+
+    private final Codec[] codecs;
+    private final ValueReader[] readers;
+    private final ValueWriter[] writers;
+    private final ForwardingListener forwardingListener = new ForwardingListener();
+    private int requestCodec = -1;
+    private int responseCodec;
+
+    RestCodecs(final List<Codec> codecs) {
+        this.codecs = codecs.toArray(new Codec[0]);
+        this.readers = new ValueReader[this.codecs.length];
+        this.writers = new ValueWriter[this.codecs.length];
+    }
+
+    void onContentType(final CharSequence value) {
+        requestCodec = indexOf(value, 0, mediaTypeEnd(value, 0, value.length()));
+    }
+
+    void onAccept(final CharSequence value) {
+        int start = 0;
+
+        while (start < value.length()) {
+            int end = start;
+            while (end < value.length() && value.charAt(end) != ',') {
+                end++;
+            }
+
+            final int mediaTypeEnd = mediaTypeEnd(value, start, end);
+            int mediaTypeStart = start;
+            while (mediaTypeStart < mediaTypeEnd && value.charAt(mediaTypeStart) == ' ') {
+                mediaTypeStart++;
+            }
+
+            if (matches(value, mediaTypeStart, mediaTypeEnd, WILDCARD)) {
+                return;
+            }
+
+            final int index = indexOf(value, mediaTypeStart, mediaTypeEnd);
+            if (index >= 0) {
+                responseCodec = index;
+                return;
+            }
+
+            start = end + 1;
+        }
+    }
+
+    Codec responseCodec() {
+        return codecs[responseCodec];
+    }
+
+    ValueWriter responseWriter() {
+        if (writers[responseCodec] == null) {
+            writers[responseCodec] = codecs[responseCodec].newWriter();
+        }
+
+        return writers[responseCodec];
+    }
+
+    ValueReader requestReader(final RestListener listener) {
+        if (requestCodec < 0 || !(listener instanceof JsonListener)) {
+            return null;
+        }
+
+        forwardingListener.target = (JsonListener) listener;
+        if (readers[requestCodec] == null) {
+            readers[requestCodec] = codecs[requestCodec].newReader(forwardingListener);
+        }
+
+        return readers[requestCodec];
+    }
+
+    void discardRequest() {
+        if (requestCodec >= 0 && readers[requestCodec] != null) {
+            readers[requestCodec].reset();
+        }
+
+        requestCodec = -1;
+        forwardingListener.target = null;
+    }
+
+    void reset() {
+        discardRequest();
+        responseCodec = 0;
+    }
+
+    private int indexOf(final CharSequence value, final int start, final int end) {
+        for (int i = 0; i < codecs.length; i++) {
+            if (matches(value, start, end, codecs[i].mediaType())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int mediaTypeEnd(final CharSequence value, final int start, final int end) {
+        int result = start;
+        while (result < end && value.charAt(result) != ';') {
+            result++;
+        }
+
+        while (result > start && value.charAt(result - 1) == ' ') {
+            result--;
+        }
+
+        return result;
+    }
+
+    private static boolean matches(final CharSequence value, final int start, final int end, final String mediaType) {
+        if (end - start != mediaType.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < mediaType.length(); i++) {
+            if (Character.toLowerCase(value.charAt(start + i)) != mediaType.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final class ForwardingListener implements JsonListener {
+        private JsonListener target;
+
+        @Override
+        public void onObjectStarted() {
+            target.onObjectStarted();
+        }
+
+        @Override
+        public void onObjectFinished() {
+            target.onObjectFinished();
+        }
+
+        @Override
+        public void onArrayStarted() {
+            target.onArrayStarted();
+        }
+
+        @Override
+        public void onArrayFinished() {
+            target.onArrayFinished();
+        }
+
+        @Override
+        public void onFieldName(final CharSequence name) {
+            target.onFieldName(name);
+        }
+
+        @Override
+        public void onString(final CharSequence value) {
+            target.onString(value);
+        }
+
+        @Override
+        public void onNumber(final CharSequence value) {
+            target.onNumber(value);
+        }
+
+        @Override
+        public void onBoolean(final boolean value) {
+            target.onBoolean(value);
+        }
+
+        @Override
+        public void onNull() {
+            target.onNull();
+        }
+    }
+}
@@ -34,6 +34,8 @@ public interface RestError {
 
     RestOutputMessage notFound();
 
+    RestOutputMessage serviceUnavailable(int retryAfterSeconds);
+
     RestOutputMessage internalServerError(CharSequence message);
 
     RestOutputMessage internalServerError(Throwable throwable);
@@ -24,6 +24,7 @@
 package fir.needle.web.server.http.rest;
 
 
+import fir.needle.joint.io.ByteAppendable;
 import fir.needle.joint.io.CharAppendable;
 
 public interface RestOutputMessage {
@@ -32,5 +33,7 @@ public interface RestOutputMessage {
 
     CharAppendable body(CharSequence contentType, int contentLength);
 
+    ByteAppendable binaryBody(CharSequence contentType, int contentLength);
+
     void commit();
 }
@@ -0,0 +1,119 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class RestPathParameters {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int size;
+    private Matcher[] matchers = new Matcher[0];
+
+    int size() {
+        return size;
+    }
+
+    String name(final int index) {
+        return names[index];
+    }
+
+    CharSequence value(final int index, final CharSequence path, final FlyweightCharSequence flyweight) {
+        final int start = starts[index];
+        final int end = ends[index];
+
+        for (int i = start; i < end; i++) {
+            if (path.charAt(i) == '%') {
+                return decode(path, start, end);
+            }
+        }
+
+        flyweight.set(path, start, end - start);
+        return flyweight;
+    }
+
+    void add(final String name, final int start, final int end) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+
+        names[size] = name;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    void truncate(final int newSize) {
+        size = newSize;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private static String decode(final CharSequence path, final int start, final int end) {
+        final byte[] bytes = new byte[end - start];
+        int length = 0;
+
+        for (int i = start; i < end; i++) {
+            final char c = path.charAt(i);
+            final int high = c == '%' && i + 2 < end ? Character.digit(path.charAt(i + 1), 16) : -1;
+            final int low = high < 0 ? -1 : Character.digit(path.charAt(i + 2), 16);
+
+            if (low < 0) {
+                bytes[length++] = (byte) c;
+            } else {
+                bytes[length++] = (byte) (high << 4 | low);
+                i += 2;
+            }
+        }
+
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    boolean matches(final Pattern pattern, final int patternId, final CharSequence path, final int start,
+            final int end) {
+        if (patternId >= matchers.length) {
+            matchers = Arrays.copyOf(matchers, patternId + 1);
+        }
+
+        Matcher matcher = matchers[patternId];
+        if (matcher == null || matcher.pattern() != pattern) {
+            matcher = pattern.matcher(path);
+            matchers[patternId] = matcher;
+        } else {
+            matcher.reset(path);
+        }
+
+        return matcher.region(start, end).matches();
+    }
+}
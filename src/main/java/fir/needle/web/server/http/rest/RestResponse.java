@@ -23,9 +23,16 @@
  */
 package fir.needle.web.server.http.rest;
 
+import fir.needle.web.server.codec.Codec;
+import fir.needle.web.server.codec.ValueWriter;
+
 public interface RestResponse {
 
     RestSuccess success();
 
     RestError error();
+
+    Codec codec();
+
+    ValueWriter writer();
 }
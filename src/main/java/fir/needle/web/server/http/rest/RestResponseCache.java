@@ -0,0 +1,322 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+
+import fir.needle.web.server.http.HttpResponseSnapshot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class RestResponseCache {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    private static final int AVERAGE_ENTRY_SIZE = 256;
+
+    private final long timeToLiveNanos;
+    private final long maximumSize;
+    private final long windowMaximumSize;
+    private final long protectedMaximumSize;
+
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedQueue = new AccessQueue();
+    private long windowSize;
+    private long mainSize;
+    private long protectedSize;
+
+    private RestResponseCache(final RestResponseCacheBuilder builder) {
+        this.timeToLiveNanos = builder.timeToLiveNanos;
+        this.maximumSize = builder.maximumSize;
+        this.windowMaximumSize = Math.max(1, maximumSize * WINDOW_PERCENT / 100);
+        this.protectedMaximumSize = (maximumSize - windowMaximumSize) * PROTECTED_PERCENT / 100;
+        this.sketch = new FrequencySketch(maximumSize / AVERAGE_ENTRY_SIZE);
+    }
+
+    public static RestResponseCacheBuilder builder() {
+        return new RestResponseCacheBuilder();
+    }
+
+    HttpResponseSnapshot get(final String key) {
+        final Node node = data.get(key);
+        final boolean isExpired = node != null && node.expirationTime - System.nanoTime() <= 0;
+
+        HttpResponseSnapshot snapshot = null;
+        if (node != null && !isExpired) {
+            try {
+                snapshot = node.snapshot.retain();
+            } catch (final IllegalStateException e) {
+                snapshot = null;
+            }
+        }
+
+        if (evictionLock.tryLock()) {
+            try {
+                sketch.increment(key);
+
+                if (isExpired) {
+                    remove(node);
+                } else if (snapshot != null) {
+                    onAccess(node);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        return snapshot;
+    }
+
+    void put(final String key, final HttpResponseSnapshot snapshot) {
+        final int size = snapshot.size();
+
+        if (snapshot.statusCode() < 200 || snapshot.statusCode() >= 300 || size > maximumSize - windowMaximumSize) {
+            snapshot.release();
+            return;
+        }
+
+        final Node node = new Node(key, snapshot, size, System.nanoTime() + timeToLiveNanos);
+
+        evictionLock.lock();
+        try {
+            final Node previous = data.put(key, node);
+            if (previous != null) {
+                previous.isRemoved = true;
+                unlink(previous);
+            }
+
+            window.addLast(node);
+            node.queue = window;
+            windowSize += size;
+
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            for (final Node node : data.values()) {
+                remove(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void onAccess(final Node node) {
+        if (node.isRemoved) {
+            return;
+        }
+
+        if (node.queue == probation) {
+            probation.remove(node);
+            protectedQueue.addLast(node);
+            node.queue = protectedQueue;
+            protectedSize += node.size;
+
+            while (protectedSize > protectedMaximumSize) {
+                final Node demoted = protectedQueue.pollFirst();
+                protectedSize -= demoted.size;
+                probation.addLast(demoted);
+                demoted.queue = probation;
+            }
+        } else {
+            node.queue.moveToLast(node);
+        }
+    }
+
+    private void evict() {
+        Node candidate = null;
+
+        while (windowSize > windowMaximumSize) {
+            final Node moved = window.pollFirst();
+            windowSize -= moved.size;
+            probation.addLast(moved);
+            moved.queue = probation;
+            mainSize += moved.size;
+
+            if (candidate == null) {
+                candidate = moved;
+            }
+        }
+
+        while (mainSize > maximumSize - windowMaximumSize) {
+            final Node victim = probation.peekFirst();
+            if (victim == null) {
+                remove(protectedQueue.peekFirst());
+                continue;
+            }
+
+            if (candidate == null || candidate == victim || candidate.isRemoved) {
+                remove(victim);
+                candidate = null;
+                continue;
+            }
+
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                remove(victim);
+            } else {
+                final Node rejected = candidate;
+                candidate = candidate.next;
+                remove(rejected);
+            }
+        }
+    }
+
+    private void remove(final Node node) {
+        if (node.isRemoved) {
+            return;
+        }
+
+        node.isRemoved = true;
+        data.remove(node.key, node);
+        unlink(node);
+    }
+
+    private void unlink(final Node node) {
+        if (node.queue == window) {
+            windowSize -= node.size;
+        } else {
+            mainSize -= node.size;
+            if (node.queue == protectedQueue) {
+                protectedSize -= node.size;
+            }
+        }
+
+        node.queue.remove(node);
+        node.queue = null;
+        node.snapshot.release();
+    }
+
+    private static final class Node {
+        private final String key;
+        private final HttpResponseSnapshot snapshot;
+        private final int size;
+        private final long expirationTime;
+        private AccessQueue queue;
+        private boolean isRemoved;
+        private Node prev;
+        private Node next;
+
+        Node(final String key, final HttpResponseSnapshot snapshot, final int size, final long expirationTime) {
+            this.key = key;
+            this.snapshot = snapshot;
+            this.size = size;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private static final class AccessQueue {
+        private Node head;
+        private Node tail;
+
+        Node peekFirst() {
+            return head;
+        }
+
+        Node pollFirst() {
+            final Node first = head;
+            if (first != null) {
+                remove(first);
+            }
+
+            return first;
+        }
+
+        void addLast(final Node node) {
+            node.prev = tail;
+            node.next = null;
+
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+
+            tail = node;
+        }
+
+        void moveToLast(final Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(final Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    public static final class RestResponseCacheBuilder {
+        private long timeToLiveNanos = TimeUnit.MINUTES.toNanos(1);
+        private long maximumSize = 64 * 1024 * 1024;
+
+        private RestResponseCacheBuilder() {
+
+        }
+
+        public RestResponseCacheBuilder withTimeToLive(final long timeToLive, final TimeUnit unit) {
+            if (timeToLive <= 0) {
+                throw new IllegalArgumentException("Time to live must be positive!");
+            }
+
+            this.timeToLiveNanos = unit.toNanos(timeToLive);
+            return this;
+        }
+
+        public RestResponseCacheBuilder withMaximumSize(final long maximumSizeInBytes) {
+            if (maximumSizeInBytes <= 0) {
+                throw new IllegalArgumentException("Maximum size must be positive!");
+            }
+
+            this.maximumSize = maximumSizeInBytes;
+            return this;
+        }
+
+        public RestResponseCache build() {
+            return new RestResponseCache(this);
+        }
+    }
+}
@@ -24,16 +24,48 @@
 package fir.needle.web.server.http.rest;
 
 
+import fir.needle.joint.io.ByteAppendable;
 import fir.needle.joint.io.CharAppendable;
+import fir.needle.web.server.codec.Codec;
+import fir.needle.web.server.codec.ValueWriter;
 import fir.needle.web.server.http.HttpOutputMessage;
 import fir.needle.web.server.http.HttpResponse;
 
 class RestResponseToHttpResponse implements RestResponse, RestSuccess, RestError, RestOutputMessage {
-    private final HttpResponse response;
+    private final RestCodecs codecs;
+    private final AppendableResponseBody body = new AppendableResponseBody();
+    private HttpResponse response;
     private HttpOutputMessage httpOutputMessage;
 
-    RestResponseToHttpResponse(final HttpResponse response) {
+    RestResponseToHttpResponse(final RestCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    RestResponseToHttpResponse reset(final HttpResponse response) {
         this.response = response;
+        this.httpOutputMessage = null;
+        body.set(null);
+        return this;
+    }
+
+    boolean isAttached() {
+        return response != null;
+    }
+
+    void detach() {
+        response = null;
+        httpOutputMessage = null;
+        body.set(null);
+    }
+
+    @Override
+    public Codec codec() {
+        return codecs.responseCodec();
+    }
+
+    @Override
+    public ValueWriter writer() {
+        return codecs.responseWriter();
     }
 
     @Override
@@ -48,100 +80,130 @@ class RestResponseToHttpResponse implements RestResponse, RestSuccess, RestError
 
     @Override
     public RestOutputMessage badRequest() {
-        httpOutputMessage = response.error().badRequest();
+        httpOutputMessage = response().error().badRequest();
         return this;
     }
 
     @Override
     public RestOutputMessage unauthorized() {
-        httpOutputMessage = response.error().unauthorized();
+        httpOutputMessage = response().error().unauthorized();
         return this;
     }
 
     @Override
     public RestOutputMessage forbidden() {
-        httpOutputMessage = response.error().forbidden();
+        httpOutputMessage = response().error().forbidden();
         return this;
     }
 
     @Override
     public RestOutputMessage notFound() {
-        httpOutputMessage = response.error().notFound();
+        httpOutputMessage = response().error().notFound();
         return this;
     }
 
     @Override
     public RestOutputMessage ok() {
-        httpOutputMessage = response.success().ok();
+        httpOutputMessage = response().success().ok();
         return this;
     }
 
     @Override
     public RestOutputMessage created() {
-        httpOutputMessage = response.success().created();
+        httpOutputMessage = response().success().created();
         return this;
     }
 
     @Override
     public RestOutputMessage noContent() {
-        httpOutputMessage = response.success().noContent();
+        httpOutputMessage = response().success().noContent();
+        return this;
+    }
+
+    @Override
+    public RestOutputMessage serviceUnavailable(final int retryAfterSeconds) {
+        httpOutputMessage = response().error().serviceUnavailable(retryAfterSeconds);
         return this;
     }
 
     @Override
     public RestOutputMessage custom(final int statusCode) {
-        httpOutputMessage = response.error().custom(statusCode);
+        httpOutputMessage = response().error().custom(statusCode);
         return this;
     }
 
     @Override
     public RestOutputMessage internalServerError(final CharSequence message) {
-        httpOutputMessage = response.error().internalServerError(message);
+        httpOutputMessage = response().error().internalServerError(message);
         return this;
     }
 
     @Override
     public RestOutputMessage internalServerError(final Throwable throwable) {
-        httpOutputMessage = response.error().internalServerError(throwable);
+        httpOutputMessage = response().error().internalServerError(throwable);
         return this;
     }
 
     @Override
     public RestOutputMessage internalServerError(final CharSequence message, final Throwable throwable) {
-        httpOutputMessage = response.error().internalServerError(message, throwable);
+        httpOutputMessage = response().error().internalServerError(message, throwable);
         return this;
     }
 
     @Override
     public RestOutputMessage custom(final int code, final CharSequence message) {
-        httpOutputMessage = response.error().custom(code, message);
+        httpOutputMessage = response().error().custom(code, message);
         return this;
     }
 
     @Override
     public RestOutputMessage custom(final int code, final Throwable throwable) {
-        httpOutputMessage = response.error().custom(code, throwable);
+        httpOutputMessage = response().error().custom(code, throwable);
         return this;
     }
 
     @Override
     public RestOutputMessage custom(final int code, final CharSequence message, final Throwable throwable) {
-        httpOutputMessage = response.error().custom(code, message, throwable);
+        httpOutputMessage = response().error().custom(code, message, throwable);
         return this;
     }
 
     @Override
     public CharAppendable body(final CharSequence contentType) {
-        throw new UnsupportedOperationException("Not implemented yet!");
+        return body.set(message().body(contentType));
     }
 
     @Override
     public CharAppendable body(final CharSequence contentType, final int contentLength) {
-        return new AppendableResponseBody(httpOutputMessage.body(contentType, contentLength));
+        return body.set(message().body(contentType, contentLength));
+    }
+
+    @Override
+    public ByteAppendable binaryBody(final CharSequence contentType, final int contentLength) {
+        return body.set(message().body(contentType, contentLength));
     }
 
     @Override
     public void commit() {
-        httpOutputMessage.commit();
+        final HttpOutputMessage message = message();
+        detach();
+        message.commit();
+    }
+
+    private HttpResponse response() {
+        if (response == null) {
+            throw new IllegalStateException("Response is used after it was committed!");
+        }
+
+        return response;
+    }
+
+    private HttpOutputMessage message() {
+        if (httpOutputMessage == null) {
+            response();
+            throw new IllegalStateException("Response status must be chosen before the body!");
+        }
+
+        return httpOutputMessage;
     }
 }
\ No newline at end of file
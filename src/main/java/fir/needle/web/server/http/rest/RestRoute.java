@@ -0,0 +1,159 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+
+import fir.needle.joint.colleclions.ConcurrentObjectPool;
+import fir.needle.joint.colleclions.Pool;
+import fir.needle.web.server.limit.AdaptiveConcurrencyLimit;
+import fir.needle.web.server.metrics.RouteMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+final class RestRoute {
+    private final String template;
+    private final Pool<RestListener> listenersPool;
+    private final RestRouteOptions options;
+    private final SingleFlight singleFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private volatile RouteMetrics metrics;
+    private volatile CompletableFuture<Void> drained;
+
+    RestRoute(final String template, final Supplier<RestListener> supplier, final RestRouteOptions options) {
+        this.template = template;
+        this.listenersPool = new ConcurrentObjectPool<>(() -> {
+            final RouteMetrics crtMetrics = metrics;
+            if (crtMetrics != null) {
+                crtMetrics.listenersPool().onMissed();
+            }
+
+            return supplier.get();
+        });
+        this.options = options;
+        this.singleFlight = options.isSingleFlight() ? new SingleFlight() : null;
+    }
+
+    String template() {
+        return template;
+    }
+
+    RouteMetrics metrics() {
+        return metrics;
+    }
+
+    void setMetrics(final RouteMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    Pool<RestListener> listenersPool() {
+        return listenersPool;
+    }
+
+    RestRouteOptions options() {
+        return options;
+    }
+
+    RestResponseCache cache() {
+        return options.cache();
+    }
+
+    SingleFlight singleFlight() {
+        return singleFlight;
+    }
+
+    boolean isKeyed() {
+        return options.cache() != null || singleFlight != null;
+    }
+
+    boolean enter() {
+        activeRequests.incrementAndGet();
+
+        if (drained != null) {
+            exit();
+            return false;
+        }
+
+        return true;
+    }
+
+    void exit() {
+        if (activeRequests.decrementAndGet() == 0) {
+            final CompletableFuture<Void> crtDrained = drained;
+            if (crtDrained != null) {
+                crtDrained.complete(null);
+            }
+        }
+    }
+
+    CompletableFuture<Void> retire() {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        drained = result;
+
+        if (activeRequests.get() == 0) {
+            result.complete(null);
+        }
+
+        return result;
+    }
+
+    boolean isLimited() {
+        return options.maxInFlight() > 0 || options.concurrencyLimit() != null;
+    }
+
+    boolean tryAdmit() {
+        final int maxInFlight = options.maxInFlight();
+        if (maxInFlight > 0 && inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+
+        final AdaptiveConcurrencyLimit limit = options.concurrencyLimit();
+        if (limit != null && !limit.tryAcquire()) {
+            if (maxInFlight > 0) {
+                inFlight.decrementAndGet();
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    void release(final long latencyNanos) {
+        if (options.maxInFlight() > 0) {
+            inFlight.decrementAndGet();
+        }
+
+        final AdaptiveConcurrencyLimit limit = options.concurrencyLimit();
+        if (limit != null) {
+            if (latencyNanos < 0) {
+                limit.release();
+            } else {
+                limit.release(latencyNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import fir.needle.web.server.limit.AdaptiveConcurrencyLimit;
+
+public final class RestRouteOptions {
+    static final RestRouteOptions DEFAULT = builder().build();
+
+    private final String[] keyParameters;
+    private final String[] keyHeaders;
+    private final RestResponseCache cache;
+    private final boolean isSingleFlight;
+    private final int maxAggregatedBodySize;
+    private final int maxInFlight;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final int retryAfterSeconds;
+
+    private RestRouteOptions(final RestRouteOptionsBuilder builder) {
+        this.keyParameters = builder.keyParameters;
+        this.keyHeaders = builder.keyHeaders;
+        this.cache = builder.cache;
+        this.isSingleFlight = builder.isSingleFlight;
+        this.maxAggregatedBodySize = builder.maxAggregatedBodySize;
+        this.maxInFlight = builder.maxInFlight;
+        this.concurrencyLimit = builder.concurrencyLimit;
+        this.retryAfterSeconds = builder.retryAfterSeconds;
+    }
+
+    public static RestRouteOptionsBuilder builder() {
+        return new RestRouteOptionsBuilder();
+    }
+
+    boolean isKeyParameter(final CharSequence name) {
+        for (int i = 0; i < keyParameters.length; i++) {
+            if (keyParameters[i].contentEquals(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    boolean isKeyHeader(final CharSequence name) {
+        for (int i = 0; i < keyHeaders.length; i++) {
+            if (keyHeaders[i].equalsIgnoreCase(name.toString())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    RestResponseCache cache() {
+        return cache;
+    }
+
+    boolean isSingleFlight() {
+        return isSingleFlight;
+    }
+
+    boolean isBodyAggregated() {
+        return maxAggregatedBodySize > 0;
+    }
+
+    int maxAggregatedBodySize() {
+        return maxAggregatedBodySize;
+    }
+
+    int maxInFlight() {
+        return maxInFlight;
+    }
+
+    AdaptiveConcurrencyLimit concurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    int retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public static final class RestRouteOptionsBuilder {
+        private static final String[] EMPTY = new String[0];
+
+        private String[] keyParameters = EMPTY;
+        private String[] keyHeaders = EMPTY;
+        private RestResponseCache cache;
+        private boolean isSingleFlight;
+        private int maxAggregatedBodySize;
+        private int maxInFlight;
+        private AdaptiveConcurrencyLimit concurrencyLimit;
+        private int retryAfterSeconds = 1;
+
+        private RestRouteOptionsBuilder() {
+
+        }
+
+        public RestRouteOptionsBuilder withKeyParameters(final String... names) {
+            this.keyParameters = names.clone();
+            return this;
+        }
+
+        public RestRouteOptionsBuilder withKeyHeaders(final String... names) {
+            this.keyHeaders = names.clone();
+            return this;
+        }
+
+        public RestRouteOptionsBuilder withCache(final RestResponseCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public RestRouteOptionsBuilder withSingleFlight() {
+            this.isSingleFlight = true;
+            return this;
+        }
+
+        public RestRouteOptionsBuilder withBodyAggregation(final int maxBodySize) {
+            if (maxBodySize <= 0) {
+                throw new IllegalArgumentException("Max body size must be positive!");
+            }
+            this.maxAggregatedBodySize = maxBodySize;
+            return this;
+        }
+
+        public RestRouteOptionsBuilder withMaxInFlight(final int maxInFlight) {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("Max in-flight requests must be positive!");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public RestRouteOptionsBuilder withConcurrencyLimit(final AdaptiveConcurrencyLimit concurrencyLimit) {
+            this.concurrencyLimit = concurrencyLimit;
+            return this;
+        }
+
+        public RestRouteOptionsBuilder withRetryAfter(final int seconds) {
+            if (seconds < 0) {
+                throw new IllegalArgumentException("Retry-After must not be negative!");
+            }
+            this.retryAfterSeconds = seconds;
+            return this;
+        }
+
+        public RestRouteOptions build() {
+            return new RestRouteOptions(this);
+        }
+    }
+}
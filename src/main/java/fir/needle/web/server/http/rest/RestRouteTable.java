@@ -0,0 +1,112 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import fir.needle.web.server.metrics.ServerMetrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public final class RestRouteTable {
+    private final Map<String, RestRoute> routes = new LinkedHashMap<>();
+    private volatile RestRouteTree tree = new RestRouteTree();
+    private ServerMetrics metrics;
+
+    RestRouteTree tree() {
+        return tree;
+    }
+
+    public RestRouteTable add(final CharSequence template, final Supplier<RestListener> supplier) {
+        return add(template, supplier, RestRouteOptions.DEFAULT);
+    }
+
+    public synchronized RestRouteTable add(final CharSequence template, final Supplier<RestListener> supplier,
+            final RestRouteOptions options) {
+        if (routes.containsKey(template.toString())) {
+            throw new IllegalArgumentException("Duplicate route: " + template);
+        }
+
+        publish(template.toString(), newRoute(template, supplier, options));
+        return this;
+    }
+
+    public CompletableFuture<Void> replace(final CharSequence template, final Supplier<RestListener> supplier) {
+        return replace(template, supplier, RestRouteOptions.DEFAULT);
+    }
+
+    public synchronized CompletableFuture<Void> replace(final CharSequence template,
+            final Supplier<RestListener> supplier, final RestRouteOptions options) {
+        final RestRoute previous = publish(template.toString(), newRoute(template, supplier, options));
+        return previous == null ? CompletableFuture.completedFuture(null) : previous.retire();
+    }
+
+    public synchronized CompletableFuture<Void> remove(final CharSequence template) {
+        if (!routes.containsKey(template.toString())) {
+            throw new IllegalArgumentException("No such route: " + template);
+        }
+
+        return publish(template.toString(), null).retire();
+    }
+
+    synchronized void setMetrics(final ServerMetrics metrics) {
+        this.metrics = metrics;
+
+        if (metrics != null) {
+            for (final RestRoute crtRoute : routes.values()) {
+                if (crtRoute.metrics() == null) {
+                    crtRoute.setMetrics(metrics.route(crtRoute.template()));
+                }
+            }
+        }
+    }
+
+    private RestRoute newRoute(final CharSequence template, final Supplier<RestListener> supplier,
+            final RestRouteOptions options) {
+        final RestRoute result = new RestRoute(template.toString(), supplier, options);
+
+        if (metrics != null) {
+            result.setMetrics(metrics.route(result.template()));
+        }
+
+        return result;
+    }
+
+    private RestRoute publish(final String template, final RestRoute route) {
+        final Map<String, RestRoute> updated = new LinkedHashMap<>(routes);
+        final RestRoute previous = route == null ? updated.remove(template) : updated.put(template, route);
+
+        final RestRouteTree updatedTree = new RestRouteTree();
+        for (final Map.Entry<String, RestRoute> crtRoute : updated.entrySet()) {
+            updatedTree.insert(crtRoute.getKey(), crtRoute.getValue());
+        }
+
+        routes.clear();
+        routes.putAll(updated);
+        tree = updatedTree;
+
+        return previous;
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+final class RestRouteTree {
+    private static final char DELIMITER = '/';
+    private static final char PARAMETER_START = '{';
+    private static final char PARAMETER_END = '}';
+    private static final char PATTERN_SEPARATOR = ':';
+    private static final char CATCH_ALL_MARK = '*';
+    private static final Node[] NO_NODES = new Node[0];
+    private static final char[] NO_CHARS = new char[0];
+
+    private final Node root = new Node(NO_CHARS);
+    private int patternsCount;
+
+    void insert(final String template, final RestRoute route) {
+        Node node = root;
+        int position = 0;
+
+        while (position < template.length()) {
+            final int parameterStart = template.indexOf(PARAMETER_START, position);
+            final int staticEnd = parameterStart < 0 ? template.length() : parameterStart;
+
+            if (staticEnd > position) {
+                node = insertStatic(node, template, position, staticEnd);
+            }
+
+            if (parameterStart < 0) {
+                break;
+            }
+
+            if (parameterStart > 0 && template.charAt(parameterStart - 1) != DELIMITER) {
+                throw new IllegalArgumentException("Path parameter must start a segment: " + template);
+            }
+
+            final int parameterEnd = parameterEnd(template, parameterStart);
+            position = parameterEnd + 1;
+
+            if (position < template.length() && template.charAt(position) != DELIMITER) {
+                throw new IllegalArgumentException("Path parameter must end a segment: " + template);
+            }
+
+            node = insertParameter(node, template, parameterStart + 1, parameterEnd);
+        }
+
+        if (node.route != null) {
+            throw new IllegalArgumentException("Duplicate route: " + template);
+        }
+        node.route = route;
+    }
+
+    RestRoute find(final CharSequence path, final RestPathParameters parameters) {
+        parameters.clear();
+        return matchChildren(root, path, 0, parameters);
+    }
+
+    private static RestRoute matchStatic(final Node node, final CharSequence path, final int position,
+            final RestPathParameters parameters) {
+        final char[] prefix = node.prefix;
+
+        if (path.length() - position < prefix.length) {
+            return null;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (path.charAt(position + i) != prefix[i]) {
+                return null;
+            }
+        }
+
+        return matchChildren(node, path, position + prefix.length, parameters);
+    }
+
+    private static RestRoute matchChildren(final Node node, final CharSequence path, final int position,
+            final RestPathParameters parameters) {
+        final int length = path.length();
+
+        if (position == length) {
+            if (node.route != null) {
+                return node.route;
+            }
+
+            if (node.catchAll != null) {
+                parameters.add(node.catchAll.name, position, position);
+                return node.catchAll.route;
+            }
+            return null;
+        }
+
+        final int index = node.indexOf(path.charAt(position));
+        if (index >= 0) {
+            final RestRoute result = matchStatic(node.children[index], path, position, parameters);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        if (node.parameters.length > 0) {
+            int segmentEnd = position;
+            while (segmentEnd < length && path.charAt(segmentEnd) != DELIMITER) {
+                segmentEnd++;
+            }
+
+            if (segmentEnd > position) {
+                final int size = parameters.size();
+
+                for (final Node crtParameter : node.parameters) {
+                    if (crtParameter.pattern != null && !parameters.matches(crtParameter.pattern,
+                            crtParameter.patternId, path, position, segmentEnd)) {
+                        continue;
+                    }
+
+                    parameters.add(crtParameter.name, position, segmentEnd);
+
+                    final RestRoute result = matchChildren(crtParameter, path, segmentEnd, parameters);
+                    if (result != null) {
+                        return result;
+                    }
+
+                    parameters.truncate(size);
+                }
+            }
+        }
+
+        if (node.catchAll != null) {
+            parameters.add(node.catchAll.name, position, length);
+            return node.catchAll.route;
+        }
+
+        return null;
+    }
+
+    private static Node insertStatic(final Node parent, final String template, final int start, final int end) {
+        Node node = parent;
+        int position = start;
+
+        while (position < end) {
+            final int index = node.indexOf(template.charAt(position));
+
+            if (index < 0) {
+                final Node child = new Node(template.substring(position, end).toCharArray());
+                node.addChild(child);
+                return child;
+            }
+
+            Node child = node.children[index];
+            final int common = commonPrefixLength(child.prefix, template, position, end);
+
+            if (common < child.prefix.length) {
+                final Node split = new Node(Arrays.copyOf(child.prefix, common));
+                child.prefix = Arrays.copyOfRange(child.prefix, common, child.prefix.length);
+                split.addChild(child);
+                node.children[index] = split;
+                child = split;
+            }
+
+            node = child;
+            position += common;
+        }
+
+        return node;
+    }
+
+    private Node insertParameter(final Node parent, final String template, final int start, final int end) {
+        if (template.charAt(start) == CATCH_ALL_MARK) {
+            if (end + 1 != template.length()) {
+                throw new IllegalArgumentException("Catch-all parameter must be the last one: " + template);
+            }
+
+            if (parent.catchAll != null) {
+                throw new IllegalArgumentException("Duplicate route: " + template);
+            }
+
+            parent.catchAll = new Node(checkName(template, start + 1, end));
+            return parent.catchAll;
+        }
+
+        final int separator = template.indexOf(PATTERN_SEPARATOR, start);
+        final boolean hasPattern = separator >= 0 && separator < end;
+        final String name = checkName(template, start, hasPattern ? separator : end);
+        final String regex = hasPattern ? template.substring(separator + 1, end) : null;
+
+        for (final Node crtParameter : parent.parameters) {
+            if (crtParameter.name.equals(name) && (regex == null ? crtParameter.pattern == null :
+                    crtParameter.pattern != null && crtParameter.pattern.pattern().equals(regex))) {
+                return crtParameter;
+            }
+        }
+
+        final Node result = new Node(name);
+        if (regex != null) {
+            result.pattern = Pattern.compile(regex);
+            result.patternId = patternsCount++;
+        }
+
+        parent.addParameter(result);
+        return result;
+    }
+
+    private static String checkName(final String template, final int start, final int end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("Path parameter must have a name: " + template);
+        }
+
+        return template.substring(start, end);
+    }
+
+    private static int parameterEnd(final String template, final int start) {
+        int depth = 0;
+
+        for (int i = start + 1; i < template.length(); i++) {
+            final char c = template.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            } else if (c == PARAMETER_START) {
+                depth++;
+            } else if (c == PARAMETER_END) {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+
+        throw new IllegalArgumentException("Unclosed path parameter: " + template);
+    }
+
+    private static int commonPrefixLength(final char[] prefix, final String template, final int start,
+            final int end) {
+        int result = 0;
+
+        while (result < prefix.length && start + result < end && prefix[result] == template.charAt(start + result)) {
+            result++;
+        }
+
+        return result;
+    }
+
+    private static final class Node {
+        private char[] prefix;
+        private char[] indices = NO_CHARS;
+        private Node[] children = NO_NODES;
+        private Node[] parameters = NO_NODES;
+        private Node catchAll;
+        private RestRoute route;
+        private final String name;
+        private Pattern pattern;
+        private int patternId;
+
+        private Node(final char[] prefix) {
+            this.prefix = prefix;
+            this.name = null;
+        }
+
+        private Node(final String name) {
+            this.prefix = NO_CHARS;
+            this.name = name;
+        }
+
+        private int indexOf(final char c) {
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] == c) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private void addChild(final Node child) {
+            indices = Arrays.copyOf(indices, indices.length + 1);
+            indices[indices.length - 1] = child.prefix[0];
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = child;
+        }
+
+        private void addParameter(final Node parameter) {
+            int position = parameters.length;
+            if (parameter.pattern != null) {
+                position = 0;
+                while (position < parameters.length && parameters[position].pattern != null) {
+                    position++;
+                }
+            }
+
+            final Node[] result = new Node[parameters.length + 1];
+            System.arraycopy(parameters, 0, result, 0, position);
+            result[position] = parameter;
+            System.arraycopy(parameters, position, result, position + 1, parameters.length - position);
+            parameters = result;
+        }
+    }
+}
@@ -24,36 +24,75 @@
 package fir.needle.web.server.http.rest;
 
 
-import fir.needle.joint.colleclions.ConcurrentObjectPool;
 import fir.needle.joint.colleclions.Pool;
-import fir.needle.joint.colleclions.SimpleParametrizedPrefixTree;
 import fir.needle.joint.io.ByteArea;
 import fir.needle.joint.io.ByteToCharArea;
+import fir.needle.joint.io.CharArea;
 import fir.needle.joint.logging.Logger;
 import fir.needle.joint.logging.SystemLogger;
+import fir.needle.web.server.codec.Codec;
+import fir.needle.web.server.codec.JsonCodec;
+import fir.needle.web.server.codec.ValueReader;
 import fir.needle.web.server.http.HttpRequestListener;
 import fir.needle.web.server.http.HttpResponse;
+import fir.needle.web.server.http.HttpResponseSnapshot;
+import fir.needle.web.server.metrics.RouteMetrics;
+import fir.needle.web.server.logging.Loggers;
+import fir.needle.web.server.metrics.ServerMetrics;
+import fir.needle.web.server.trace.RequestPhase;
+import fir.needle.web.server.trace.RequestTracer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class RestRouter implements HttpRequestListener {
-    private static final String EOL = "\n";
-    private final SimpleParametrizedPrefixTree<Pool<RestListener>> routesTree;
-    private final List<SimpleParametrizedPrefixTree.Parameter> pathParams = new ArrayList<>();
+    private static final String GET = "GET";
+    private static final String CONTENT_LENGTH_HEADER_NAME = "Content-Length";
+    private static final String CONTENT_TYPE_HEADER_NAME = "Content-Type";
+    private static final String ACCEPT_HEADER_NAME = "Accept";
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private final RestRouteTable routeTable;
+    private final RestPathParameters pathParams = new RestPathParameters();
     private final Logger logger;
+    private final RequestTracer tracer;
+    private final RestCodecs codecs;
+    private RestResponseToHttpResponse responseAdapter;
+    private boolean isResponseAdapterEscaped;
 
     private RestListener crtListener;
     private Pool<RestListener> crtListenersPool;
     private FlyweightCharSequence parameter = new FlyweightCharSequence();
 
+    private RestRoute crtRoute;
+    private RestRoute enteredRoute;
+    private HttpResponse crtResponse;
+    private CharSequence crtMethod;
+    private CharSequence crtUrl;
+    private boolean isStartDeferred;
+    private final StringBuilder requestKey = new StringBuilder();
+    private final List<CharSequence> deferredParamNames = new ArrayList<>();
+    private final List<CharSequence> deferredParamValues = new ArrayList<>();
+    private HttpResponse recordingResponse;
+    private RestResponseCache recordingCache;
+    private SingleFlight recordingSingleFlight;
+    private SingleFlight.Flight recordingFlight;
+    private String recordingKey;
+    private long requestStartTime;
+    private RouteMetrics requestMetrics;
+    private AggregatedBody aggregatedBody;
+    private boolean isBodyRejected;
+    private RestRoute admittedRoute;
+    private ByteToCharArea bodyCharArea;
+    private ByteArea bodyCharAreaSource;
 
     RestRouter(final RestRouterBuilder builder, final Logger logger) {
-        this.routesTree = builder.routesTree;
+        this.routeTable = builder.routeTable;
         this.logger = logger;
+        this.tracer = builder.tracer;
+        this.codecs = new RestCodecs(builder.resolvedCodecs());
+        this.responseAdapter = new RestResponseToHttpResponse(codecs);
     }
 
     public static RestRouterBuilder builder() {
@@ -66,9 +105,21 @@ public class RestRouter implements HttpRequestListener {
             logger.trace("On get started " + this.toString() + " by " + Thread.currentThread());
         }
 
-        crtListenersPool = routesTree.find(url, pathParams);
+        releaseAdmission(-1);
+        leaveRoute();
+        abortRecording();
 
-        if (crtListenersPool == null) {
+        crtRoute = resolve(url);
+        enteredRoute = crtRoute;
+        crtResponse = response;
+        requestStartTime = System.nanoTime();
+        requestMetrics = crtRoute == null ? null : crtRoute.metrics();
+
+        if (tracer != null) {
+            tracer.markActive(RequestPhase.ROUTE_RESOLVED);
+        }
+
+        if (crtRoute == null) {
             if (logger.isTraceEnabled()) {
                 logger.trace("On get started NOT_FOUND " + this.toString() + " by " + Thread.currentThread() + " for " +
                         url);
@@ -78,29 +129,108 @@ public class RestRouter implements HttpRequestListener {
             return;
         }
 
+        if (crtRoute.isKeyed() && GET.contentEquals(method) && !response.isWarmUp()) {
+            crtMethod = method;
+            crtUrl = url;
+            isStartDeferred = true;
+
+            requestKey.setLength(0);
+            appendKey('M', method);
+            appendKey('U', url);
+            return;
+        }
+
+        if (!admit()) {
+            pathParams.clear();
+            return;
+        }
+
+        startListener(method, url, response);
+    }
+
+    private RestRoute resolve(final CharSequence url) {
+        RestRoute route;
+
+        do {
+            route = routeTable.tree().find(url, pathParams);
+        } while (route != null && !route.enter());
+
+        return route;
+    }
+
+    private void leaveRoute() {
+        if (enteredRoute != null) {
+            final RestRoute route = enteredRoute;
+            enteredRoute = null;
+            route.exit();
+        }
+    }
+
+    private boolean admit() {
+        if (!crtRoute.isLimited()) {
+            return true;
+        }
+
+        if (crtRoute.tryAdmit()) {
+            admittedRoute = crtRoute;
+            return true;
+        }
+
         try {
+            crtResponse.error().serviceUnavailable(crtRoute.options().retryAfterSeconds()).commit();
+        } catch (final Exception e) {
+            if (logger.isErrorEnabled()) {
+                Loggers.error(logger, e);
+            }
+        }
+
+        return false;
+    }
+
+    private void releaseAdmission(final long latencyNanos) {
+        if (admittedRoute != null) {
+            final RestRoute route = admittedRoute;
+            admittedRoute = null;
+            route.release(latencyNanos);
+        }
+    }
+
+    private void startListener(final CharSequence method, final CharSequence url, final HttpResponse response) {
+        crtListenersPool = crtRoute.listenersPool();
+
+        try {
+            final long borrowStartTime = System.nanoTime();
             crtListener = crtListenersPool.borrow();
+
+            final RouteMetrics metrics = crtRoute.metrics();
+            if (metrics != null) {
+                metrics.listenersPool().onBorrowed(System.nanoTime() - borrowStartTime);
+            }
         } catch (final Exception e) {
             if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+                Loggers.error(logger, e);
             }
         }
 
+        if (isResponseAdapterEscaped) {
+            responseAdapter = new RestResponseToHttpResponse(codecs);
+            isResponseAdapterEscaped = false;
+        }
+
         try {
-            crtListener.onRequestStarted(method, new RestResponseToHttpResponse(response));
+            crtListener.onRequestStarted(method, responseAdapter.reset(response));
         } catch (final Exception e) {
             if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+                Loggers.error(logger, e);
             }
         }
 
         for (int i = 0; i < pathParams.size(); i++) {
-            parameter.set(url, pathParams.get(i).getStartIndex(), pathParams.get(i).getLength());
             try {
-                crtListener.onParameter(pathParams.get(i).getName(), parameter);
+                crtListener.onParameter(pathParams.name(i), pathParams.value(i, url, parameter));
             } catch (final Exception e) {
                 if (logger.isErrorEnabled()) {
-                    logger.error(getStackTrace(e));
+                    Loggers.error(logger, e);
                 }
             }
         }
@@ -109,24 +239,98 @@ public class RestRouter implements HttpRequestListener {
         parameter.clear();
     }
 
-    private void throwNotFound(final HttpResponse response, final CharSequence url) {
-        response.error().custom(404, "No such url!\n" + url.toString()).commit();
-        onCommitted();
+    private void completeDeferredStart() {
+        isStartDeferred = false;
+
+        final RestResponseCache cache = crtRoute.cache();
+        final SingleFlight singleFlight = crtRoute.singleFlight();
+        appendKey('C', codecs.responseCodec().mediaType());
+        final String key = requestKey.toString();
+        final HttpResponseSnapshot cached = cache == null ? null : cache.get(key);
+
+        if (cached != null) {
+            try {
+                crtResponse.write(cached);
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
+                }
+            } finally {
+                cached.release();
+            }
+
+            pathParams.clear();
+            clearDeferredParams();
+            return;
+        }
+
+        if (!admit()) {
+            pathParams.clear();
+            clearDeferredParams();
+            return;
+        }
+
+        if (crtResponse.isRecordable()) {
+            if (singleFlight != null) {
+                recordingFlight = singleFlight.join(key, crtResponse);
+
+                if (recordingFlight == null) {
+                    pathParams.clear();
+                    clearDeferredParams();
+                    return;
+                }
+
+                recordingSingleFlight = singleFlight;
+            }
+
+            recordingResponse = crtResponse;
+            recordingCache = cache;
+            recordingKey = key;
+            recordingResponse.startRecording();
+        }
+
+        startListener(crtMethod, crtUrl, crtResponse);
+
+        for (int i = 0; i < deferredParamNames.size(); i++) {
+            onParameter(deferredParamNames.get(i), deferredParamValues.get(i));
+        }
+
+        clearDeferredParams();
+    }
+
+    private void appendKey(final char tag, final CharSequence component) {
+        requestKey.append(tag).append(component.length()).append(':').append(component);
     }
 
-    private String getStackTrace(final Throwable throwable) {
-        return Stream.of(throwable.getStackTrace())
-                .map(Object::toString)
-                .collect(Collectors.joining(EOL));
+    private void clearDeferredParams() {
+        deferredParamNames.clear();
+        deferredParamValues.clear();
+        crtMethod = null;
+        crtUrl = null;
+    }
+
+    private void throwNotFound(final HttpResponse response, final CharSequence url) {
+        response.error().custom(404, "No such url!\n" + url.toString()).commit();
     }
 
     @Override
     public void onParameter(final CharSequence name, final CharSequence value) {
+        if (isStartDeferred) {
+            deferredParamNames.add(name.toString());
+            deferredParamValues.add(value.toString());
+
+            if (crtRoute.options().isKeyParameter(name)) {
+                appendKey('P', name);
+                appendKey('=', value);
+            }
+            return;
+        }
+
         try {
             crtListener.onParameter(name, value);
         } catch (final Exception e) {
             if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+                Loggers.error(logger, e);
             }
         }
 
@@ -134,32 +338,182 @@ public class RestRouter implements HttpRequestListener {
 
     @Override
     public void onHeader(final CharSequence key, final CharSequence value) {
+        if (isHeader(CONTENT_TYPE_HEADER_NAME, key)) {
+            codecs.onContentType(value);
+        } else if (isHeader(ACCEPT_HEADER_NAME, key)) {
+            codecs.onAccept(value);
+        }
+
+        if (isStartDeferred && crtRoute.options().isKeyHeader(key)) {
+            appendKey('H', key);
+            appendKey(':', value);
+        }
 
+        if (crtRoute != null && crtRoute.options().isBodyAggregated() &&
+                isHeader(CONTENT_LENGTH_HEADER_NAME, key) &&
+                parseLength(value) > crtRoute.options().maxAggregatedBodySize()) {
+            rejectBody();
+        }
     }
 
     @Override
     public void onBodyStarted() {
+        if (crtRoute != null && crtRoute.options().isBodyAggregated()) {
+            if (aggregatedBody == null) {
+                aggregatedBody = new AggregatedBody();
+            }
 
+            aggregatedBody.clear();
+        }
     }
 
     @Override
     public void onBodyContent(final ByteArea buffer, final long startIndex, final long length) {
+        if (isBodyRejected || crtListener == null) {
+            return;
+        }
+
+        if (crtRoute.options().isBodyAggregated()) {
+            if (aggregatedBody.size() + length > crtRoute.options().maxAggregatedBodySize()) {
+                rejectBody();
+                return;
+            }
+
+            aggregatedBody.append(buffer, startIndex, length);
+            return;
+        }
+
+        final ValueReader reader = codecs.requestReader(crtListener);
+        if (reader != null) {
+            feedReader(reader, buffer, startIndex, length);
+            return;
+        }
+
         try {
-            crtListener.onBodyPart(new ByteToCharArea(buffer), startIndex, length);
+            crtListener.onBodyPart(charAreaOf(buffer), startIndex, length);
         } catch (final Exception e) {
             if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+                Loggers.error(logger, e);
             }
         }
     }
 
     @Override
     public void onBodyFinished() {
+        if (isBodyRejected || crtListener == null) {
+            return;
+        }
 
+        final ValueReader reader = codecs.requestReader(crtListener);
+
+        if (crtRoute.options().isBodyAggregated() && aggregatedBody.size() > 0) {
+            if (reader != null) {
+                feedReader(reader, aggregatedBody, 0, aggregatedBody.size());
+            } else {
+                try {
+                    crtListener.onBodyPart(charAreaOf(aggregatedBody), 0, aggregatedBody.size());
+                } catch (final Exception e) {
+                    if (logger.isErrorEnabled()) {
+                        Loggers.error(logger, e);
+                    }
+                }
+            }
+
+            aggregatedBody.clear();
+        }
+
+        if (reader != null && codecs.requestReader(crtListener) != null) {
+            try {
+                reader.end();
+            } catch (final Exception e) {
+                onReaderError(e);
+            }
+        }
+    }
+
+    private void feedReader(final ValueReader reader, final ByteArea buffer, final long startIndex,
+            final long length) {
+        try {
+            reader.feed(buffer, startIndex, length);
+        } catch (final Exception e) {
+            onReaderError(e);
+        }
+    }
+
+    private void onReaderError(final Exception exception) {
+        codecs.discardRequest();
+
+        try {
+            crtListener.onError(exception);
+        } catch (final Exception e) {
+            if (logger.isErrorEnabled()) {
+                Loggers.error(logger, e);
+            }
+        }
+    }
+
+    private void rejectBody() {
+        if (isBodyRejected) {
+            return;
+        }
+
+        isBodyRejected = true;
+        if (aggregatedBody != null) {
+            aggregatedBody.clear();
+        }
+
+        final String message = "Request body exceeds " + crtRoute.options().maxAggregatedBodySize() + " bytes";
+        crtResponse.error()
+                .custom(PAYLOAD_TOO_LARGE, message)
+                .commit();
+
+        if (crtListener != null) {
+            try {
+                crtListener.onError(new IllegalArgumentException(message));
+            } catch (final Exception e) {
+                if (logger.isErrorEnabled()) {
+                    Loggers.error(logger, e);
+                }
+            }
+        }
+    }
+
+    private static boolean isHeader(final String name, final CharSequence key) {
+        if (name.length() != key.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase(name.charAt(i)) != Character.toLowerCase(key.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long parseLength(final CharSequence value) {
+        long result = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            if (result > Long.MAX_VALUE / 10) {
+                return Long.MAX_VALUE;
+            }
+
+            result = result * 10 + (c - '0');
+        }
+
+        return value.length() == 0 ? -1 : result;
     }
 
     @Override
-    public void onPartStarted() {
+    public void onPartStarted(final CharSequence name, final CharSequence fileName,
+            final CharSequence contentType) {
 
     }
 
@@ -175,11 +529,20 @@ public class RestRouter implements HttpRequestListener {
 
     @Override
     public void onError(final Throwable exception) {
+        if (crtListener == null) {
+            if (!isStartDeferred) {
+                releaseAdmission(-1);
+                leaveRoute();
+                abortRecording();
+            }
+            return;
+        }
+
         try {
             crtListener.onError(exception);
         } catch (final Exception e) {
             if (logger.isErrorEnabled()) {
-                logger.error(getStackTrace(e));
+                Loggers.error(logger, e);
             }
         }
     }
@@ -190,37 +553,127 @@ public class RestRouter implements HttpRequestListener {
             logger.trace("On get finished " + this.toString() + " by " + Thread.currentThread());
         }
 
+        if (isStartDeferred) {
+            completeDeferredStart();
+        }
+
         if (crtListenersPool != null && crtListener != null) {
             try {
                 crtListener.onRequestFinished();
             } catch (final Exception e) {
                 if (logger.isErrorEnabled()) {
-                    logger.error(getStackTrace(e));
+                    Loggers.error(logger, e);
                 }
             } finally {
+                isResponseAdapterEscaped = responseAdapter.isAttached();
+
+                final RouteMetrics metrics = crtRoute == null ? null : crtRoute.metrics();
+                if (metrics != null) {
+                    metrics.listenersPool().onReleased();
+                }
+
                 crtListenersPool.release(crtListener);
                 crtListenersPool = null;
                 crtListener = null;
             }
         }
+
+        crtRoute = null;
+        isBodyRejected = false;
+        codecs.reset();
     }
 
     @Override
     public void onCommitted() {
+        responseAdapter.detach();
+        releaseAdmission(System.nanoTime() - requestStartTime);
+        leaveRoute();
+
+        if (requestMetrics != null && crtResponse != null) {
+            requestMetrics.requests().record(crtResponse.statusCode(), -1, System.nanoTime() - requestStartTime);
+        }
+        requestMetrics = null;
+        crtResponse = null;
+
+        if (recordingResponse == null) {
+            return;
+        }
+
+        final HttpResponseSnapshot snapshot = recordingResponse.takeSnapshot();
+        if (snapshot != null) {
+            if (recordingFlight != null) {
+                recordingSingleFlight.complete(recordingFlight, snapshot);
+            }
+
+            if (recordingCache != null) {
+                recordingCache.put(recordingKey, snapshot);
+            } else {
+                snapshot.release();
+            }
+        } else if (recordingFlight != null) {
+            recordingSingleFlight.complete(recordingFlight, null);
+        }
+
+        clearRecording();
+    }
+
+    private CharArea charAreaOf(final ByteArea area) {
+        if (area != bodyCharAreaSource) {
+            bodyCharArea = new ByteToCharArea(area);
+            bodyCharAreaSource = area;
+        }
+
+        return bodyCharArea;
+    }
+
+    private void abortRecording() {
+        if (recordingFlight != null) {
+            recordingSingleFlight.complete(recordingFlight, null);
+        }
+
+        clearRecording();
+    }
 
+    private void clearRecording() {
+        recordingResponse = null;
+        recordingCache = null;
+        recordingSingleFlight = null;
+        recordingFlight = null;
+        recordingKey = null;
     }
 
     public static final class RestRouterBuilder {
-        private static final String DELIMITER = "/";
-        private final SimpleParametrizedPrefixTree<Pool<RestListener>> routesTree;
+        private final RestRouteTable routeTable = new RestRouteTable();
+        private final List<Codec> codecs = new ArrayList<>();
+        private volatile List<Codec> resolvedCodecs;
         private Logger logger;
+        private ServerMetrics metrics;
+        private RequestTracer tracer;
 
         private RestRouterBuilder() {
-            routesTree = new SimpleParametrizedPrefixTree<>(DELIMITER);
+
         }
 
         public RestRouterBuilder withPair(final CharSequence url, final Supplier<RestListener> supplier) {
-            routesTree.insert(url.toString(), new ConcurrentObjectPool<>(supplier));
+            return withPair(url, supplier, RestRouteOptions.DEFAULT);
+        }
+
+        public RestRouterBuilder withPair(final CharSequence url, final Supplier<RestListener> supplier,
+                final RestRouteOptions options) {
+            routeTable.add(url, supplier, options);
+            return this;
+        }
+
+        public RestRouteTable routeTable() {
+            return routeTable;
+        }
+
+        public RestRouterBuilder withCodec(final Codec codec) {
+            if (resolvedCodecs != null) {
+                throw new IllegalStateException("Codecs can not be added after the first router was built!");
+            }
+
+            codecs.add(codec);
             return this;
         }
 
@@ -229,11 +682,40 @@ public class RestRouter implements HttpRequestListener {
             return this;
         }
 
+        public RestRouterBuilder withMetrics(final ServerMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public RestRouterBuilder withTracer(final RequestTracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        private List<Codec> resolvedCodecs() {
+            final List<Codec> result = resolvedCodecs;
+            if (result != null) {
+                return result;
+            }
+
+            synchronized (codecs) {
+                if (resolvedCodecs == null) {
+                    resolvedCodecs = Collections.unmodifiableList(codecs.isEmpty() ?
+                            Collections.singletonList(new JsonCodec()) :
+                            new ArrayList<>(codecs));
+                }
+
+                return resolvedCodecs;
+            }
+        }
+
         public RestRouter build() {
             if (logger == null) {
                 logger = SystemLogger.info();
             }
 
+            routeTable.setMetrics(metrics);
+
             return new RestRouter(this, logger);
         }
     }
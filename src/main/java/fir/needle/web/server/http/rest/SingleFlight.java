@@ -0,0 +1,109 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+
+import fir.needle.web.server.http.HttpResponse;
+import fir.needle.web.server.http.HttpResponseSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class SingleFlight {
+    private static final int FALLBACK_STATUS_CODE = 503;
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    Flight join(final String key, final HttpResponse response) {
+        Flight created = null;
+
+        while (true) {
+            final Flight existing = flights.get(key);
+
+            if (existing != null && existing.addWaiter(response)) {
+                return null;
+            }
+
+            if (created == null) {
+                created = new Flight(key);
+            }
+
+            final boolean isLeader = existing == null ?
+                    flights.putIfAbsent(key, created) == null :
+                    flights.replace(key, existing, created);
+
+            if (isLeader) {
+                return created;
+            }
+        }
+    }
+
+    void complete(final Flight flight, final HttpResponseSnapshot snapshot) {
+        flights.remove(flight.key, flight);
+
+        final List<HttpResponse> waiters = flight.close();
+        for (int i = 0; i < waiters.size(); i++) {
+            final HttpResponse waiter = waiters.get(i);
+
+            if (snapshot == null) {
+                waiter.executor().execute(() -> waiter.error().custom(FALLBACK_STATUS_CODE).commit());
+                continue;
+            }
+
+            snapshot.retain();
+            waiter.executor().execute(() -> {
+                try {
+                    waiter.write(snapshot);
+                } finally {
+                    snapshot.release();
+                }
+            });
+        }
+    }
+
+    static final class Flight {
+        private final String key;
+        private final List<HttpResponse> waiters = new ArrayList<>();
+        private boolean isClosed;
+
+        private Flight(final String key) {
+            this.key = key;
+        }
+
+        private synchronized boolean addWaiter(final HttpResponse response) {
+            if (isClosed) {
+                return false;
+            }
+
+            waiters.add(response);
+            return true;
+        }
+
+        private synchronized List<HttpResponse> close() {
+            isClosed = true;
+            return waiters;
+        }
+    }
+}
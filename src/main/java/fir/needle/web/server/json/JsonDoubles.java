@@ -0,0 +1,265 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.json;
+
+import java.math.BigInteger;
+
+final class JsonDoubles {
+    static final int MAX_LENGTH = 32;
+
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << P - 1;
+    private static final long T_MASK = C_MIN - 1;
+    private static final int BQ_MASK = 0x7FF;
+    private static final long C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final int G_BITS = 125;
+    private static final long MASK_63 = Long.MAX_VALUE;
+    private static final int MIN_PLAIN_EXPONENT = -5;
+    private static final int MAX_PLAIN_EXPONENT = 21;
+    private static final long[] G = powersOfTen();
+
+    private JsonDoubles() {
+
+    }
+
+    static int format(final double value, final char[] out) {
+        final long bits = Double.doubleToRawLongBits(value);
+        final long t = bits & T_MASK;
+        final int bq = (int) (bits >>> P - 1) & BQ_MASK;
+
+        int position = 0;
+        if (bits < 0) {
+            out[position++] = '-';
+        }
+
+        if (bq != 0) {
+            final int mq = -Q_MIN + 1 - bq;
+            final long c = C_MIN | t;
+
+            if (0 < mq && mq < P) {
+                final long f = c >> mq;
+                if (f << mq == c) {
+                    return toChars(f, 0, out, position);
+                }
+            }
+
+            return toDecimal(-mq, c, 0, out, position);
+        }
+
+        if (t != 0) {
+            return t < C_TINY ?
+                    toDecimal(Q_MIN, 10 * t, -1, out, position) :
+                    toDecimal(Q_MIN, t, 0, out, position);
+        }
+
+        out[position++] = '0';
+        return position;
+    }
+
+    private static int toDecimal(final int q, final long c, final int dk, final char[] out, final int position) {
+        final int parity = (int) c & 1;
+        final long cb = c << 2;
+        final long cbr = cb + 2;
+
+        final long cbl;
+        final int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = floorLog10Pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = floorLog10ThreeQuartersPow2(q);
+        }
+
+        final int h = q + floorLog2Pow10(-k) + 2;
+        final long g1 = G[2 * (k - K_MIN)];
+        final long g0 = G[2 * (k - K_MIN) + 1];
+
+        final long vb = roundToOdd(g1, g0, cb << h);
+        final long vbl = roundToOdd(g1, g0, cbl << h);
+        final long vbr = roundToOdd(g1, g0, cbr << h);
+
+        final long s = vb >> 2;
+        if (s >= 100) {
+            final long sp10 = s / 10 * 10;
+            final long tp10 = sp10 + 10;
+            final boolean upin = vbl + parity <= sp10 << 2;
+            final boolean wpin = (tp10 << 2) + parity <= vbr;
+
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k, out, position);
+            }
+        }
+
+        final long t = s + 1;
+        final boolean uin = vbl + parity <= s << 2;
+        final boolean win = (t << 2) + parity <= vbr;
+
+        if (uin != win) {
+            return toChars(uin ? s : t, k + dk, out, position);
+        }
+
+        final long cmp = vb - (s + t << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, out, position);
+    }
+
+    private static int toChars(final long significand, final int exponent, final char[] out, final int start) {
+        long f = significand;
+        int e = exponent;
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+
+        final int length = digitsCount(f);
+        final int pointPosition = length + e;
+
+        int position = start;
+        if (pointPosition > MIN_PLAIN_EXPONENT && pointPosition <= MAX_PLAIN_EXPONENT) {
+            if (pointPosition <= 0) {
+                out[position++] = '0';
+                out[position++] = '.';
+                for (int i = pointPosition; i < 0; i++) {
+                    out[position++] = '0';
+                }
+
+                return writeDigits(f, length, out, position);
+            }
+
+            if (pointPosition >= length) {
+                position = writeDigits(f, length, out, position);
+                for (int i = length; i < pointPosition; i++) {
+                    out[position++] = '0';
+                }
+
+                return position;
+            }
+
+            writeDigits(f, length, out, position + 1);
+            System.arraycopy(out, position + 1, out, position, pointPosition);
+            out[position + pointPosition] = '.';
+
+            return position + length + 1;
+        }
+
+        writeDigits(f, length, out, position + 1);
+        out[position] = out[position + 1];
+        if (length > 1) {
+            out[position + 1] = '.';
+            position += length + 1;
+        } else {
+            position++;
+        }
+
+        out[position++] = 'E';
+
+        int scientificExponent = pointPosition - 1;
+        if (scientificExponent < 0) {
+            out[position++] = '-';
+            scientificExponent = -scientificExponent;
+        }
+
+        return writeDigits(scientificExponent, digitsCount(scientificExponent), out, position);
+    }
+
+    private static int writeDigits(final long value, final int length, final char[] out, final int start) {
+        long remaining = value;
+        for (int i = start + length - 1; i >= start; i--) {
+            out[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        return start + length;
+    }
+
+    private static int digitsCount(final long value) {
+        int result = 1;
+        for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+            result++;
+        }
+
+        return result;
+    }
+
+    private static long roundToOdd(final long g1, final long g0, final long cp) {
+        final long x1 = multiplyHigh(g0, cp);
+        final long y0 = g1 * cp;
+        final long y1 = multiplyHigh(g1, cp);
+        final long z = (y0 >>> 1) + x1;
+        final long vbp = y1 + (z >>> 63);
+
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static long multiplyHigh(final long x, final long y) {
+        final long x1 = x >> 32;
+        final long x2 = x & 0xFFFFFFFFL;
+        final long y1 = y >> 32;
+        final long y2 = y & 0xFFFFFFFFL;
+
+        final long z2 = x2 * y2;
+        final long t = x1 * y2 + (z2 >>> 32);
+        final long z0 = t >> 32;
+        final long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    private static int floorLog10Pow2(final int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int floorLog10ThreeQuartersPow2(final int e) {
+        return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+    }
+
+    private static int floorLog2Pow10(final int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    private static long[] powersOfTen() {
+        final long[] result = new long[2 * (K_MAX - K_MIN + 1)];
+
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            final int shift = G_BITS - floorLog2Pow10(-k);
+
+            final BigInteger g;
+            if (k <= 0) {
+                final BigInteger power = BigInteger.TEN.pow(-k);
+                g = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+            } else {
+                g = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+            }
+
+            final BigInteger rounded = g.add(BigInteger.ONE);
+            result[2 * (k - K_MIN)] = rounded.shiftRight(63).longValue();
+            result[2 * (k - K_MIN) + 1] = rounded.longValue() & MASK_63;
+        }
+
+        return result;
+    }
+}
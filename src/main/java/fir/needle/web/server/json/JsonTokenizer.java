@@ -0,0 +1,484 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.json;
+
+import fir.needle.joint.io.ByteArea;
+import fir.needle.joint.io.CharArea;
+
+public final class JsonTokenizer {
+    private static final int DEFAULT_MAX_DEPTH = 256;
+    private static final int DEFAULT_MAX_TOKEN_LENGTH = 1024 * 1024;
+    private static final String TRUE = "true";
+    private static final String FALSE = "false";
+    private static final String NULL = "null";
+
+    private enum State {
+        VALUE, VALUE_OR_END, FIELD_NAME, FIELD_NAME_OR_END, COLON, AFTER_VALUE, STRING, STRING_ESCAPE,
+        STRING_UNICODE, NUMBER, LITERAL, DONE
+    }
+
+    private enum NumberState {
+        SIGN, ZERO, INTEGER, DOT, FRACTION, EXPONENT_MARK, EXPONENT_SIGN, EXPONENT;
+
+        private boolean isComplete() {
+            return this == ZERO || this == INTEGER || this == FRACTION || this == EXPONENT;
+        }
+    }
+
+    private final JsonListener listener;
+    private final int maxTokenLength;
+    private final boolean[] isObject;
+    private final StringBuilder token = new StringBuilder();
+
+    private State state = State.VALUE;
+    private NumberState numberState;
+    private int depth;
+    private boolean isFieldName;
+    private int unicodeDigits;
+    private int unicodeValue;
+    private String literal;
+    private int literalIndex;
+    private int pendingUtf8Bytes;
+    private int codePoint;
+    private long position;
+
+    public JsonTokenizer(final JsonListener listener) {
+        this(listener, DEFAULT_MAX_DEPTH, DEFAULT_MAX_TOKEN_LENGTH);
+    }
+
+    public JsonTokenizer(final JsonListener listener, final int maxDepth, final int maxTokenLength) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null!");
+        }
+
+        this.listener = listener;
+        this.isObject = new boolean[maxDepth];
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    public void feed(final CharArea area, final long startIndex, final long length) {
+        for (long i = startIndex; i < startIndex + length; i++) {
+            consume(area.getChar(i));
+        }
+    }
+
+    public void feed(final ByteArea area, final long startIndex, final long length) {
+        for (long i = startIndex; i < startIndex + length; i++) {
+            consumeUtf8(area.getByte(i));
+        }
+    }
+
+    public void end() {
+        if (pendingUtf8Bytes != 0) {
+            fail("Truncated UTF-8 sequence");
+        }
+
+        if (state == State.NUMBER) {
+            finishNumber();
+        }
+
+        if (state != State.DONE) {
+            fail("Unexpected end of the document");
+        }
+
+        reset();
+    }
+
+    public void reset() {
+        state = State.VALUE;
+        depth = 0;
+        token.setLength(0);
+        literal = null;
+        pendingUtf8Bytes = 0;
+        position = 0;
+    }
+
+    private void consumeUtf8(final byte b) {
+        if (pendingUtf8Bytes == 0) {
+            if (b >= 0) {
+                consume((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                codePoint = b & 0x1F;
+                pendingUtf8Bytes = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                codePoint = b & 0x0F;
+                pendingUtf8Bytes = 2;
+            } else if ((b & 0xF8) == 0xF0) {
+                codePoint = b & 0x07;
+                pendingUtf8Bytes = 3;
+            } else {
+                fail("Malformed UTF-8 sequence");
+            }
+            return;
+        }
+
+        if ((b & 0xC0) != 0x80) {
+            fail("Malformed UTF-8 sequence");
+        }
+
+        codePoint = codePoint << 6 | b & 0x3F;
+        if (--pendingUtf8Bytes == 0) {
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                consume(Character.highSurrogate(codePoint));
+                consume(Character.lowSurrogate(codePoint));
+            } else {
+                consume((char) codePoint);
+            }
+        }
+    }
+
+    private void consume(final char c) {
+        position++;
+
+        switch (state) {
+            case STRING:
+                consumeString(c);
+                return;
+            case STRING_ESCAPE:
+                consumeEscape(c);
+                return;
+            case STRING_UNICODE:
+                consumeUnicode(c);
+                return;
+            case NUMBER:
+                if (consumeNumber(c)) {
+                    appendToken(c);
+                    return;
+                }
+
+                finishNumber();
+                break;
+            case LITERAL:
+                consumeLiteral(c);
+                return;
+            default:
+                break;
+        }
+
+        if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            return;
+        }
+
+        consumeStructural(c);
+    }
+
+    private void consumeStructural(final char c) {
+        switch (state) {
+            case VALUE:
+                startValue(c);
+                break;
+            case VALUE_OR_END:
+                if (c == ']') {
+                    finishContainer(false);
+                } else {
+                    startValue(c);
+                }
+                break;
+            case FIELD_NAME_OR_END:
+                if (c == '}') {
+                    finishContainer(true);
+                } else {
+                    startFieldName(c);
+                }
+                break;
+            case FIELD_NAME:
+                startFieldName(c);
+                break;
+            case COLON:
+                if (c != ':') {
+                    fail(c);
+                }
+                state = State.VALUE;
+                break;
+            case AFTER_VALUE:
+                if (c == ',') {
+                    state = isObject[depth - 1] ? State.FIELD_NAME : State.VALUE;
+                } else if (c == '}' || c == ']') {
+                    finishContainer(c == '}');
+                } else {
+                    fail(c);
+                }
+                break;
+            default:
+                fail(c);
+        }
+    }
+
+    private void startValue(final char c) {
+        switch (c) {
+            case '{':
+                push(true);
+                listener.onObjectStarted();
+                state = State.FIELD_NAME_OR_END;
+                break;
+            case '[':
+                push(false);
+                listener.onArrayStarted();
+                state = State.VALUE_OR_END;
+                break;
+            case '"':
+                token.setLength(0);
+                isFieldName = false;
+                state = State.STRING;
+                break;
+            case 't':
+                startLiteral(TRUE);
+                break;
+            case 'f':
+                startLiteral(FALSE);
+                break;
+            case 'n':
+                startLiteral(NULL);
+                break;
+            default:
+                if (c == '-' || isDigit(c)) {
+                    token.setLength(0);
+                    token.append(c);
+                    numberState = c == '-' ? NumberState.SIGN : c == '0' ? NumberState.ZERO : NumberState.INTEGER;
+                    state = State.NUMBER;
+                } else {
+                    fail(c);
+                }
+        }
+    }
+
+    private void startFieldName(final char c) {
+        if (c != '"') {
+            fail(c);
+        }
+
+        token.setLength(0);
+        isFieldName = true;
+        state = State.STRING;
+    }
+
+    private void startLiteral(final String literal) {
+        this.literal = literal;
+        this.literalIndex = 1;
+        state = State.LITERAL;
+    }
+
+    private void consumeString(final char c) {
+        if (c == '"') {
+            if (isFieldName) {
+                listener.onFieldName(token);
+                state = State.COLON;
+            } else {
+                listener.onString(token);
+                afterValue();
+            }
+        } else if (c == '\\') {
+            state = State.STRING_ESCAPE;
+        } else if (c < ' ') {
+            fail(c);
+        } else {
+            appendToken(c);
+        }
+    }
+
+    private void consumeEscape(final char c) {
+        state = State.STRING;
+
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                appendToken(c);
+                break;
+            case 'b':
+                appendToken('\b');
+                break;
+            case 'f':
+                appendToken('\f');
+                break;
+            case 'n':
+                appendToken('\n');
+                break;
+            case 'r':
+                appendToken('\r');
+                break;
+            case 't':
+                appendToken('\t');
+                break;
+            case 'u':
+                unicodeDigits = 0;
+                unicodeValue = 0;
+                state = State.STRING_UNICODE;
+                break;
+            default:
+                fail(c);
+        }
+    }
+
+    private void consumeUnicode(final char c) {
+        final int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            fail(c);
+        }
+
+        unicodeValue = unicodeValue << 4 | digit;
+        if (++unicodeDigits == 4) {
+            appendToken((char) unicodeValue);
+            state = State.STRING;
+        }
+    }
+
+    private void consumeLiteral(final char c) {
+        if (c != literal.charAt(literalIndex)) {
+            fail(c);
+        }
+
+        if (++literalIndex < literal.length()) {
+            return;
+        }
+
+        if (literal == NULL) {
+            listener.onNull();
+        } else {
+            listener.onBoolean(literal == TRUE);
+        }
+
+        literal = null;
+        afterValue();
+    }
+
+    private void push(final boolean object) {
+        if (depth == isObject.length) {
+            fail("Maximum nesting depth of " + isObject.length + " exceeded");
+        }
+
+        isObject[depth++] = object;
+    }
+
+    private void finishContainer(final boolean object) {
+        if (depth == 0 || isObject[depth - 1] != object) {
+            fail(object ? '}' : ']');
+        }
+
+        depth--;
+        if (object) {
+            listener.onObjectFinished();
+        } else {
+            listener.onArrayFinished();
+        }
+
+        afterValue();
+    }
+
+    private void afterValue() {
+        state = depth == 0 ? State.DONE : State.AFTER_VALUE;
+    }
+
+    private void appendToken(final char c) {
+        if (token.length() == maxTokenLength) {
+            fail("Token exceeds " + maxTokenLength + " characters");
+        }
+
+        token.append(c);
+    }
+
+    private boolean consumeNumber(final char c) {
+        switch (numberState) {
+            case SIGN:
+                if (!isDigit(c)) {
+                    fail(c);
+                }
+                numberState = c == '0' ? NumberState.ZERO : NumberState.INTEGER;
+                return true;
+            case ZERO:
+                if (isDigit(c)) {
+                    fail(c);
+                }
+                return consumeFractionOrExponent(c);
+            case INTEGER:
+                return isDigit(c) || consumeFractionOrExponent(c);
+            case DOT:
+                if (!isDigit(c)) {
+                    fail(c);
+                }
+                numberState = NumberState.FRACTION;
+                return true;
+            case FRACTION:
+                return isDigit(c) || consumeExponent(c);
+            case EXPONENT_MARK:
+                if (c == '+' || c == '-') {
+                    numberState = NumberState.EXPONENT_SIGN;
+                    return true;
+                }
+                return consumeExponentDigit(c);
+            case EXPONENT_SIGN:
+                return consumeExponentDigit(c);
+            default:
+                return isDigit(c);
+        }
+    }
+
+    private boolean consumeFractionOrExponent(final char c) {
+        if (c == '.') {
+            numberState = NumberState.DOT;
+            return true;
+        }
+
+        return consumeExponent(c);
+    }
+
+    private boolean consumeExponent(final char c) {
+        if (c == 'e' || c == 'E') {
+            numberState = NumberState.EXPONENT_MARK;
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean consumeExponentDigit(final char c) {
+        if (!isDigit(c)) {
+            fail(c);
+        }
+
+        numberState = NumberState.EXPONENT;
+        return true;
+    }
+
+    private void finishNumber() {
+        if (!numberState.isComplete()) {
+            fail("Truncated number '" + token + "'");
+        }
+
+        listener.onNumber(token);
+        afterValue();
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void fail(final char c) {
+        fail("Unexpected character '" + c + "'");
+    }
+
+    private void fail(final String message) {
+        throw new IllegalArgumentException(message + " at position " + position);
+    }
+}
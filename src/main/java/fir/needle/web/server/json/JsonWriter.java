@@ -0,0 +1,283 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.json;
+
+import fir.needle.joint.io.CharAppendable;
+import fir.needle.joint.io.CharArea;
+
+public final class JsonWriter {
+    private static final int DEFAULT_MAX_DEPTH = 256;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String TRUE = "true";
+    private static final String FALSE = "false";
+    private static final String NULL = "null";
+    private static final String MIN_LONG = Long.toString(Long.MIN_VALUE);
+
+    private final boolean[] isObject;
+    private final boolean[] hasElements;
+    private final char[] digits = new char[JsonDoubles.MAX_LENGTH];
+
+    private CharAppendable out;
+    private int depth;
+    private boolean isNameWritten;
+    private int length;
+
+    public JsonWriter() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    public JsonWriter(final int maxDepth) {
+        this.isObject = new boolean[maxDepth];
+        this.hasElements = new boolean[maxDepth];
+    }
+
+    public JsonWriter wrap(final CharAppendable out) {
+        this.out = out;
+        this.depth = 0;
+        this.isNameWritten = false;
+        this.length = 0;
+        return this;
+    }
+
+    public JsonWriter measure() {
+        return wrap(null);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public JsonWriter startObject() {
+        beforeValue();
+        push(true);
+        write('{');
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        pop(true);
+        write('}');
+        return this;
+    }
+
+    public JsonWriter startArray() {
+        beforeValue();
+        push(false);
+        write('[');
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        pop(false);
+        write(']');
+        return this;
+    }
+
+    public JsonWriter name(final CharSequence name) {
+        if (depth == 0 || !isObject[depth - 1] || isNameWritten) {
+            throw new IllegalStateException("Field name is allowed only inside an object before a value!");
+        }
+
+        writeSeparator();
+        writeString(name);
+        write(':');
+        isNameWritten = true;
+        return this;
+    }
+
+    public JsonWriter value(final CharSequence value) {
+        if (value == null) {
+            return nullValue();
+        }
+
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(final CharArea area, final long startIndex, final long length) {
+        beforeValue();
+        write('"');
+        for (long i = startIndex; i < startIndex + length; i++) {
+            writeEscaped(area.getChar(i));
+        }
+        write('"');
+        return this;
+    }
+
+    public JsonWriter value(final long value) {
+        beforeValue();
+
+        if (value == Long.MIN_VALUE) {
+            write(MIN_LONG);
+            return this;
+        }
+
+        long remaining = value < 0 ? -value : value;
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        if (value < 0) {
+            write('-');
+        }
+
+        for (int i = position; i < digits.length; i++) {
+            write(digits[i]);
+        }
+
+        return this;
+    }
+
+    public JsonWriter value(final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON does not allow " + value);
+        }
+
+        if (value == (long) value) {
+            return value((long) value);
+        }
+
+        beforeValue();
+        final int digitsLength = JsonDoubles.format(value, digits);
+        for (int i = 0; i < digitsLength; i++) {
+            write(digits[i]);
+        }
+        return this;
+    }
+
+    public JsonWriter value(final boolean value) {
+        beforeValue();
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        write(NULL);
+        return this;
+    }
+
+    private void beforeValue() {
+        if (depth == 0) {
+            return;
+        }
+
+        if (isObject[depth - 1]) {
+            if (!isNameWritten) {
+                throw new IllegalStateException("Field name must be written before a value inside an object!");
+            }
+
+            isNameWritten = false;
+        } else {
+            writeSeparator();
+        }
+    }
+
+    private void writeSeparator() {
+        if (hasElements[depth - 1]) {
+            write(',');
+        } else {
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    private void push(final boolean object) {
+        if (depth == isObject.length) {
+            throw new IllegalStateException("Maximum nesting depth of " + isObject.length + " exceeded!");
+        }
+
+        isObject[depth] = object;
+        hasElements[depth] = false;
+        depth++;
+    }
+
+    private void pop(final boolean object) {
+        if (depth == 0 || isObject[depth - 1] != object || isNameWritten) {
+            throw new IllegalStateException("Unbalanced " + (object ? "object" : "array") + " end!");
+        }
+
+        depth--;
+    }
+
+    private void writeString(final CharSequence value) {
+        write('"');
+        for (int i = 0; i < value.length(); i++) {
+            writeEscaped(value.charAt(i));
+        }
+        write('"');
+    }
+
+    private void writeEscaped(final char c) {
+        switch (c) {
+            case '"':
+                write('\\');
+                write('"');
+                break;
+            case '\\':
+                write('\\');
+                write('\\');
+                break;
+            case '\n':
+                write('\\');
+                write('n');
+                break;
+            case '\r':
+                write('\\');
+                write('r');
+                break;
+            case '\t':
+                write('\\');
+                write('t');
+                break;
+            default:
+                if (c < ' ' || c > '~') {
+                    write('\\');
+                    write('u');
+                    write(HEX_DIGITS[c >> 12 & 0xF]);
+                    write(HEX_DIGITS[c >> 8 & 0xF]);
+                    write(HEX_DIGITS[c >> 4 & 0xF]);
+                    write(HEX_DIGITS[c & 0xF]);
+                } else {
+                    write(c);
+                }
+        }
+    }
+
+    private void write(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            write(value.charAt(i));
+        }
+    }
+
+    private void write(final char c) {
+        length++;
+
+        if (out != null) {
+            out.appendChar(c);
+        }
+    }
+}
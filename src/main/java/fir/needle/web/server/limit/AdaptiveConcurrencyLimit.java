@@ -0,0 +1,196 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class AdaptiveConcurrencyLimit {
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double BASELINE_WEIGHT = 0.02;
+    private static final double BASELINE_DECAY = 0.95;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final double tolerance;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder sampleCount = new LongAdder();
+    private final AtomicLong windowEnd;
+    private volatile int limit;
+    private volatile int peakInFlight;
+    private double baselineLatency;
+
+    private AdaptiveConcurrencyLimit(final AdaptiveConcurrencyLimitBuilder builder) {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.windowNanos = builder.windowNanos;
+        this.tolerance = builder.tolerance;
+        this.smoothing = builder.smoothing;
+        this.limit = builder.initialLimit;
+        this.windowEnd = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    public static AdaptiveConcurrencyLimitBuilder builder() {
+        return new AdaptiveConcurrencyLimitBuilder();
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public boolean tryAcquire() {
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > peakInFlight) {
+                    peakInFlight = current + 1;
+                }
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public void release(final long latencyNanos) {
+        inFlight.decrementAndGet();
+        latencySum.add(latencyNanos);
+        sampleCount.increment();
+
+        final long now = System.nanoTime();
+        final long end = windowEnd.get();
+        if (now - end >= 0 && windowEnd.compareAndSet(end, now + windowNanos)) {
+            updateLimit();
+        }
+    }
+
+    private void updateLimit() {
+        final long count = sampleCount.sumThenReset();
+        final long sum = latencySum.sumThenReset();
+        final int peak = peakInFlight;
+        peakInFlight = inFlight.get();
+
+        if (count == 0) {
+            return;
+        }
+
+        final double latency = (double) sum / count;
+        if (baselineLatency == 0) {
+            baselineLatency = latency;
+        } else {
+            baselineLatency = baselineLatency * (1 - BASELINE_WEIGHT) + latency * BASELINE_WEIGHT;
+        }
+
+        if (baselineLatency > latency * 2) {
+            baselineLatency *= BASELINE_DECAY;
+        }
+
+        final int current = limit;
+        if (peak < current / 2) {
+            return;
+        }
+
+        final double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * baselineLatency / latency));
+        final double target = current * gradient + Math.sqrt(current);
+        final double smoothed = current * (1 - smoothing) + target * smoothing;
+        final int next = (int) (smoothed > current ? Math.ceil(smoothed) : Math.floor(smoothed));
+
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    public static final class AdaptiveConcurrencyLimitBuilder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private long windowNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        private double tolerance = 1.5;
+        private double smoothing = 0.2;
+
+        private AdaptiveConcurrencyLimitBuilder() {
+
+        }
+
+        public AdaptiveConcurrencyLimitBuilder withInitialLimit(final int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimitBuilder withMinLimit(final int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimitBuilder withMaxLimit(final int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimitBuilder withWindow(final long window, final TimeUnit unit) {
+            this.windowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimitBuilder withTolerance(final double tolerance) {
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimitBuilder withSmoothing(final double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimit build() {
+            if (minLimit <= 0 || minLimit > maxLimit) {
+                throw new IllegalArgumentException("Limits must satisfy 0 < min <= max!");
+            }
+
+            if (initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException("Initial limit must be within [min, max]!");
+            }
+
+            if (windowNanos <= 0 || tolerance < 1 || smoothing <= 0 || smoothing > 1) {
+                throw new IllegalArgumentException("Window must be positive, tolerance >= 1, smoothing in (0, 1]!");
+            }
+
+            return new AdaptiveConcurrencyLimit(this);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.limit;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class RateLimiter {
+    private static final long EMPTY = 0;
+    private static final int PROBES = 4;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final int retryAfterCapSeconds;
+    private final String keyHeader;
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray arrivals;
+    private final long origin;
+
+    private RateLimiter(final RateLimiterBuilder builder) {
+        this.emissionIntervalNanos = Math.max(1, builder.periodNanos / builder.permits);
+        this.burstNanos = emissionIntervalNanos * builder.burst;
+        this.retryAfterCapSeconds = builder.retryAfterCapSeconds;
+        this.keyHeader = builder.keyHeader;
+
+        final int capacity = Integer.highestOneBit(builder.capacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.keys = new AtomicLongArray(capacity);
+        this.arrivals = new AtomicLongArray(capacity);
+        this.origin = System.nanoTime();
+    }
+
+    public static RateLimiterBuilder builder() {
+        return new RateLimiterBuilder();
+    }
+
+    public static long keyOf(final CharSequence value) {
+        long hash = FNV_OFFSET;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    public static long keyOf(final InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        long hash = FNV_OFFSET;
+
+        for (final byte crtByte : bytes) {
+            hash = (hash ^ (crtByte & 0xFF)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    public String keyHeader() {
+        return keyHeader;
+    }
+
+    public int retryAfterSeconds(final long delayNanos) {
+        final long seconds = (delayNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        return (int) Math.min(seconds, retryAfterCapSeconds);
+    }
+
+    /**
+     * Takes a permit for the given client key.
+     *
+     * @param key client key, see {@link #keyOf(CharSequence)} and {@link #keyOf(InetAddress)}
+     * @return 0 if the permit was taken, otherwise the nanoseconds until the next permit becomes available
+     */
+    public long acquire(final long key) {
+        final long clientKey = key == EMPTY ? 1 : key;
+        final long now = System.nanoTime() - origin + burstNanos;
+        final int slot = slotOf(clientKey, now);
+
+        for (;;) {
+            final long arrival = arrivals.get(slot);
+            final long next = Math.max(arrival, now) + emissionIntervalNanos;
+            final long delay = next - now - burstNanos;
+
+            if (delay > 0) {
+                return delay;
+            }
+
+            if (arrivals.compareAndSet(slot, arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private int slotOf(final long key, final long now) {
+        final int start = (int) mix(key) & mask;
+
+        for (;;) {
+            int victim = start;
+            long victimArrival = Long.MAX_VALUE;
+
+            for (int i = 0; i < PROBES; i++) {
+                final int slot = (start + i) & mask;
+                if (keys.get(slot) == key) {
+                    return slot;
+                }
+
+                final long arrival = arrivals.get(slot);
+                if (arrival < victimArrival) {
+                    victim = slot;
+                    victimArrival = arrival;
+                }
+            }
+
+            final long victimKey = keys.get(victim);
+            if (keys.compareAndSet(victim, victimKey, key)) {
+                if (victimArrival > now) {
+                    arrivals.compareAndSet(victim, victimArrival, 0);
+                }
+                return victim;
+            }
+        }
+    }
+
+    private static long mix(final long value) {
+        long result = value;
+        result ^= result >>> 33;
+        result *= 0xff51afd7ed558ccdL;
+        result ^= result >>> 33;
+        result *= 0xc4ceb9fe1a85ec53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    public static final class RateLimiterBuilder {
+        private long permits;
+        private long periodNanos;
+        private int burst = 1;
+        private int capacity = 65536;
+        private int retryAfterCapSeconds = 60;
+        private String keyHeader;
+
+        private RateLimiterBuilder() {
+
+        }
+
+        public RateLimiterBuilder withRate(final long permits, final long period, final TimeUnit unit) {
+            this.permits = permits;
+            this.periodNanos = unit.toNanos(period);
+            return this;
+        }
+
+        public RateLimiterBuilder withBurst(final int burst) {
+            this.burst = burst;
+            return this;
+        }
+
+        public RateLimiterBuilder withCapacity(final int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public RateLimiterBuilder withKeyHeader(final String name) {
+            this.keyHeader = name;
+            return this;
+        }
+
+        public RateLimiterBuilder withRetryAfterCap(final int seconds) {
+            this.retryAfterCapSeconds = seconds;
+            return this;
+        }
+
+        public RateLimiter build() {
+            if (permits <= 0 || periodNanos <= 0) {
+                throw new IllegalArgumentException("Rate must be positive!");
+            }
+
+            if (burst <= 0) {
+                throw new IllegalArgumentException("Burst must be positive!");
+            }
+
+            if (capacity < PROBES || capacity > 1 << 30) {
+                throw new IllegalArgumentException("Capacity must be within [" + PROBES + ", 2^30]!");
+            }
+
+            if (retryAfterCapSeconds < 0) {
+                throw new IllegalArgumentException("Retry-After cap must not be negative!");
+            }
+
+            return new RateLimiter(this);
+        }
+    }
+}
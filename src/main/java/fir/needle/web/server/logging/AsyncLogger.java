@@ -0,0 +1,369 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.logging;
+
+
+import fir.needle.joint.logging.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public final class AsyncLogger implements Logger, AutoCloseable {
+    private static final byte TRACE = 0;
+    private static final byte DEBUG = 1;
+    private static final byte INFO = 2;
+    private static final byte WARN = 3;
+    private static final byte ERROR = 4;
+    private static final String EOL = "\n";
+    private static final int MAX_TRACKED_ERRORS = 1024;
+
+    private final Logger delegate;
+    private final Event[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final long idleParkNanos;
+    private final long errorIntervalNanos;
+    private final Map<String, RepeatedError> repeatedErrors = new HashMap<>();
+    private final StringBuilder text = new StringBuilder();
+    private final Thread worker;
+    private long head;
+    private volatile boolean isRunning = true;
+
+    private AsyncLogger(final AsyncLoggerBuilder builder) {
+        this.delegate = builder.delegate;
+        this.events = new Event[builder.capacity];
+        this.sequences = new AtomicLongArray(builder.capacity);
+        this.mask = builder.capacity - 1;
+        this.idleParkNanos = builder.idleParkNanos;
+        this.errorIntervalNanos = builder.errorIntervalNanos;
+
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new Event(builder.maxMessageLength);
+            sequences.set(i, i);
+        }
+
+        this.worker = new Thread(this::drainLoop, builder.threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public static AsyncLoggerBuilder builder(final Logger delegate) {
+        return new AsyncLoggerBuilder(delegate);
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+        return delegate.isTraceEnabled();
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return delegate.isDebugEnabled();
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return delegate.isInfoEnabled();
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return delegate.isWarnEnabled();
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return delegate.isErrorEnabled();
+    }
+
+    @Override
+    public void trace(final CharSequence message) {
+        enqueue(TRACE, message, null);
+    }
+
+    @Override
+    public void debug(final CharSequence message) {
+        enqueue(DEBUG, message, null);
+    }
+
+    @Override
+    public void info(final CharSequence message) {
+        enqueue(INFO, message, null);
+    }
+
+    @Override
+    public void warn(final CharSequence message) {
+        enqueue(WARN, message, null);
+    }
+
+    @Override
+    public void error(final CharSequence message) {
+        enqueue(ERROR, message, null);
+    }
+
+    public void error(final Throwable throwable) {
+        enqueue(ERROR, null, throwable);
+    }
+
+    public long droppedEvents() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        isRunning = false;
+        LockSupport.unpark(worker);
+        worker.join();
+    }
+
+    private void enqueue(final byte level, final CharSequence message, final Throwable throwable) {
+        long position = tail.get();
+
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events[index].set(level, message, throwable);
+                    sequences.lazySet(index, position + 1);
+                    return;
+                }
+
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (isRunning || head != tail.get()) {
+            if (!drainOne()) {
+                LockSupport.parkNanos(idleParkNanos);
+            }
+        }
+    }
+
+    private boolean drainOne() {
+        final int index = (int) (head & mask);
+
+        if (sequences.get(index) != head + 1) {
+            return false;
+        }
+
+        final Event event = events[index];
+        try {
+            publish(event);
+        } catch (final RuntimeException e) {
+            dropped.increment();
+        } finally {
+            event.clear();
+            sequences.lazySet(index, head + events.length);
+            head++;
+        }
+
+        return true;
+    }
+
+    private void publish(final Event event) {
+        text.setLength(0);
+
+        if (event.throwable != null) {
+            if (!shouldPublish(event.throwable)) {
+                return;
+            }
+
+            appendStackTrace(event.throwable);
+        } else {
+            text.append(event.message, 0, event.length);
+        }
+
+        final long droppedEvents = dropped.sumThenReset();
+        if (droppedEvents > 0) {
+            text.append(EOL).append(droppedEvents).append(" log events were dropped");
+        }
+
+        final String formatted = text.toString();
+        switch (event.level) {
+            case TRACE:
+                delegate.trace(formatted);
+                break;
+            case DEBUG:
+                delegate.debug(formatted);
+                break;
+            case INFO:
+                delegate.info(formatted);
+                break;
+            case WARN:
+                delegate.warn(formatted);
+                break;
+            default:
+                delegate.error(formatted);
+                break;
+        }
+    }
+
+    private boolean shouldPublish(final Throwable throwable) {
+        final StackTraceElement[] stackTrace = throwable.getStackTrace();
+        final String key = stackTrace.length == 0 ?
+                throwable.getClass().getName() :
+                throwable.getClass().getName() + '@' + stackTrace[0];
+
+        final long now = System.nanoTime();
+        final RepeatedError repeated = repeatedErrors.get(key);
+
+        if (repeated == null) {
+            if (repeatedErrors.size() == MAX_TRACKED_ERRORS) {
+                repeatedErrors.clear();
+            }
+
+            repeatedErrors.put(key, new RepeatedError(now));
+            return true;
+        }
+
+        if (now - repeated.lastPublishedTime < errorIntervalNanos) {
+            repeated.suppressed++;
+            return false;
+        }
+
+        if (repeated.suppressed > 0) {
+            text.append(repeated.suppressed).append(" identical errors were suppressed").append(EOL);
+        }
+
+        repeated.lastPublishedTime = now;
+        repeated.suppressed = 0;
+        return true;
+    }
+
+    private void appendStackTrace(final Throwable throwable) {
+        text.append(throwable);
+
+        final StackTraceElement[] stackTrace = throwable.getStackTrace();
+        for (int i = 0; i < stackTrace.length; i++) {
+            text.append(EOL).append("\tat ").append(stackTrace[i]);
+        }
+
+        final Throwable cause = throwable.getCause();
+        if (cause != null && cause != throwable) {
+            text.append(EOL).append("Caused by: ");
+            appendStackTrace(cause);
+        }
+    }
+
+    private static final class Event {
+        private final char[] message;
+        private byte level;
+        private int length;
+        private Throwable throwable;
+
+        Event(final int maxMessageLength) {
+            this.message = new char[maxMessageLength];
+        }
+
+        void set(final byte level, final CharSequence source, final Throwable throwable) {
+            this.level = level;
+            this.throwable = throwable;
+            this.length = source == null ? 0 : Math.min(source.length(), message.length);
+
+            for (int i = 0; i < length; i++) {
+                message[i] = source.charAt(i);
+            }
+        }
+
+        void clear() {
+            throwable = null;
+            length = 0;
+        }
+    }
+
+    private static final class RepeatedError {
+        private long lastPublishedTime;
+        private long suppressed;
+
+        RepeatedError(final long lastPublishedTime) {
+            this.lastPublishedTime = lastPublishedTime;
+        }
+    }
+
+    public static final class AsyncLoggerBuilder {
+        private final Logger delegate;
+        private int capacity = 8192;
+        private int maxMessageLength = 1024;
+        private long idleParkNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        private long errorIntervalNanos = TimeUnit.SECONDS.toNanos(10);
+        private String threadName = "needle-async-logger";
+
+        private AsyncLoggerBuilder(final Logger delegate) {
+            if (delegate == null) {
+                throw new IllegalArgumentException("Delegate logger must not be null!");
+            }
+
+            this.delegate = delegate;
+        }
+
+        public AsyncLoggerBuilder withCapacity(final int capacity) {
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("Capacity must be a positive power of two!");
+            }
+
+            this.capacity = capacity;
+            return this;
+        }
+
+        public AsyncLoggerBuilder withMaxMessageLength(final int maxMessageLength) {
+            this.maxMessageLength = maxMessageLength;
+            return this;
+        }
+
+        public AsyncLoggerBuilder withIdlePark(final long idlePark, final TimeUnit unit) {
+            this.idleParkNanos = unit.toNanos(idlePark);
+            return this;
+        }
+
+        public AsyncLoggerBuilder withRepeatedErrorInterval(final long interval, final TimeUnit unit) {
+            this.errorIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        public AsyncLoggerBuilder withThreadName(final String threadName) {
+            this.threadName = threadName;
+            return this;
+        }
+
+        public AsyncLogger build() {
+            return new AsyncLogger(this);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.metrics;
+
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public final class PoolMetrics {
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder inUse = new LongAdder();
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+
+    public <T> Supplier<T> instrument(final Supplier<T> supplier) {
+        return () -> {
+            onMissed();
+            return supplier.get();
+        };
+    }
+
+    public void onMissed() {
+        misses.increment();
+    }
+
+    public void onBorrowed(final long waitNanos) {
+        borrows.increment();
+        inUse.increment();
+        borrowWait.record(waitNanos);
+    }
+
+    public void onReleased() {
+        inUse.decrement();
+    }
+
+    public long borrows() {
+        return borrows.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long inUse() {
+        return inUse.sum();
+    }
+
+    public LatencyHistogram borrowWait() {
+        return borrowWait;
+    }
+}
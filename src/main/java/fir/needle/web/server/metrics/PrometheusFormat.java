@@ -0,0 +1,143 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.metrics;
+
+
+import java.util.List;
+
+public final class PrometheusFormat {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "needle_";
+    private static final double NANOS_IN_SECOND = 1_000_000_000.0;
+
+    private PrometheusFormat() {
+
+    }
+
+    public static void write(final ServerMetricsSnapshot snapshot, final StringBuilder out) {
+        writeValue(out, "connections_accepted_total", "counter", snapshot.acceptedConnections());
+        writeValue(out, "connections_active", "gauge", snapshot.activeConnections());
+        writeValue(out, "bytes_received_total", "counter", snapshot.bytesReceived());
+        writeValue(out, "bytes_sent_total", "counter", snapshot.bytesSent());
+
+        final List<ServerMetricsSnapshot.RequestSnapshot> requests = snapshot.requests();
+
+        writeType(out, "request_duration_seconds", "summary");
+        for (int i = 0; i < requests.size(); i++) {
+            final ServerMetricsSnapshot.RequestSnapshot request = requests.get(i);
+            writeSummary(out, "request_duration_seconds", request.route(), request.statusCode(), request.total());
+        }
+
+        writeType(out, "request_first_byte_seconds", "summary");
+        for (int i = 0; i < requests.size(); i++) {
+            final ServerMetricsSnapshot.RequestSnapshot request = requests.get(i);
+            if (request.firstByte().count() > 0) {
+                writeSummary(out, "request_first_byte_seconds", request.route(), request.statusCode(),
+                        request.firstByte());
+            }
+        }
+
+        final List<ServerMetricsSnapshot.PoolSnapshot> pools = snapshot.pools();
+
+        writeType(out, "pool_borrows_total", "counter");
+        for (int i = 0; i < pools.size(); i++) {
+            writeSample(out, "pool_borrows_total", pools.get(i).route(), -1, null).append(pools.get(i).borrows())
+                    .append('\n');
+        }
+
+        writeType(out, "pool_misses_total", "counter");
+        for (int i = 0; i < pools.size(); i++) {
+            writeSample(out, "pool_misses_total", pools.get(i).route(), -1, null).append(pools.get(i).misses())
+                    .append('\n');
+        }
+
+        writeType(out, "pool_in_use", "gauge");
+        for (int i = 0; i < pools.size(); i++) {
+            writeSample(out, "pool_in_use", pools.get(i).route(), -1, null).append(pools.get(i).inUse())
+                    .append('\n');
+        }
+
+        writeType(out, "pool_borrow_wait_seconds", "summary");
+        for (int i = 0; i < pools.size(); i++) {
+            writeSummary(out, "pool_borrow_wait_seconds", pools.get(i).route(), -1, pools.get(i).borrowWait());
+        }
+    }
+
+    private static void writeValue(final StringBuilder out, final String name, final String type, final long value) {
+        writeType(out, name, type);
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void writeType(final StringBuilder out, final String name, final String type) {
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSummary(final StringBuilder out, final String name, final String route,
+            final int statusCode, final HistogramSnapshot histogram) {
+        writeQuantile(out, name, route, statusCode, "0.5", histogram.p50());
+        writeQuantile(out, name, route, statusCode, "0.9", histogram.p90());
+        writeQuantile(out, name, route, statusCode, "0.99", histogram.p99());
+        writeQuantile(out, name, route, statusCode, "0.999", histogram.p999());
+        writeSample(out, name + "_sum", route, statusCode, null).append(histogram.sum() / NANOS_IN_SECOND)
+                .append('\n');
+        writeSample(out, name + "_count", route, statusCode, null).append(histogram.count()).append('\n');
+    }
+
+    private static void writeQuantile(final StringBuilder out, final String name, final String route,
+            final int statusCode, final String quantile, final long nanos) {
+        writeSample(out, name, route, statusCode, quantile).append(nanos / NANOS_IN_SECOND).append('\n');
+    }
+
+    private static StringBuilder writeSample(final StringBuilder out, final String name, final String route,
+            final int statusCode, final String quantile) {
+        out.append(PREFIX).append(name).append("{route=\"");
+        escape(out, route);
+        out.append('"');
+
+        if (statusCode > 0) {
+            out.append(",code=\"").append(statusCode).append('"');
+        }
+
+        if (quantile != null) {
+            out.append(",quantile=\"").append(quantile).append('"');
+        }
+
+        return out.append("} ");
+    }
+
+    private static void escape(final StringBuilder out, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
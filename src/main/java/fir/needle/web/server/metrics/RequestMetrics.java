@@ -0,0 +1,78 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.metrics;
+
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class RequestMetrics {
+    static final int MIN_STATUS_CODE = 100;
+    static final int MAX_STATUS_CODE = 599;
+
+    private final AtomicReferenceArray<StatusMetrics> statuses =
+            new AtomicReferenceArray<>(MAX_STATUS_CODE - MIN_STATUS_CODE + 1);
+
+    public void record(final int statusCode, final long firstByteNanos, final long totalNanos) {
+        final StatusMetrics metrics = status(statusCode);
+
+        if (firstByteNanos >= 0) {
+            metrics.firstByte.record(firstByteNanos);
+        }
+
+        metrics.total.record(totalNanos);
+    }
+
+    public StatusMetrics status(final int statusCode) {
+        final int index = Math.min(Math.max(statusCode, MIN_STATUS_CODE), MAX_STATUS_CODE) - MIN_STATUS_CODE;
+
+        StatusMetrics metrics = statuses.get(index);
+        if (metrics == null) {
+            statuses.compareAndSet(index, null, new StatusMetrics());
+            metrics = statuses.get(index);
+        }
+
+        return metrics;
+    }
+
+    StatusMetrics statusIfPresent(final int statusCode) {
+        return statuses.get(statusCode - MIN_STATUS_CODE);
+    }
+
+    public static final class StatusMetrics {
+        private final LatencyHistogram firstByte = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+
+        private StatusMetrics() {
+
+        }
+
+        public LatencyHistogram firstByte() {
+            return firstByte;
+        }
+
+        public LatencyHistogram total() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.metrics;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ServerMetrics {
+    private static final String SERVER_ROUTE = "";
+
+    private final LongAdder acceptedConnections = new LongAdder();
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final RequestMetrics requests = new RequestMetrics();
+    private final PoolMetrics listenersPool = new PoolMetrics();
+    private final ConcurrentHashMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+    public void onConnectionOpened() {
+        acceptedConnections.increment();
+        activeConnections.increment();
+    }
+
+    public void onConnectionClosed() {
+        activeConnections.decrement();
+    }
+
+    public void onBytesReceived(final long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    public void onBytesSent(final long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    public RequestMetrics requests() {
+        return requests;
+    }
+
+    public PoolMetrics listenersPool() {
+        return listenersPool;
+    }
+
+    public RouteMetrics route(final String route) {
+        return routes.computeIfAbsent(route, RouteMetrics::new);
+    }
+
+    public ServerMetricsSnapshot snapshot() {
+        final List<ServerMetricsSnapshot.RequestSnapshot> requestSnapshots = new ArrayList<>();
+        final List<ServerMetricsSnapshot.PoolSnapshot> poolSnapshots = new ArrayList<>();
+
+        addRequests(SERVER_ROUTE, requests, requestSnapshots);
+        poolSnapshots.add(snapshotOf(SERVER_ROUTE, listenersPool));
+
+        for (final RouteMetrics route : routes.values()) {
+            addRequests(route.route(), route.requests(), requestSnapshots);
+            poolSnapshots.add(snapshotOf(route.route(), route.listenersPool()));
+        }
+
+        return new ServerMetricsSnapshot(acceptedConnections.sum(), activeConnections.sum(), bytesReceived.sum(),
+                bytesSent.sum(), requestSnapshots, poolSnapshots);
+    }
+
+    private static void addRequests(final String route, final RequestMetrics metrics,
+            final List<ServerMetricsSnapshot.RequestSnapshot> result) {
+        for (int code = RequestMetrics.MIN_STATUS_CODE; code <= RequestMetrics.MAX_STATUS_CODE; code++) {
+            final RequestMetrics.StatusMetrics status = metrics.statusIfPresent(code);
+
+            if (status != null) {
+                result.add(new ServerMetricsSnapshot.RequestSnapshot(route, code, status.total().snapshot(),
+                        status.firstByte().snapshot()));
+            }
+        }
+    }
+
+    private static ServerMetricsSnapshot.PoolSnapshot snapshotOf(final String route, final PoolMetrics metrics) {
+        return new ServerMetricsSnapshot.PoolSnapshot(route, metrics.borrows(), metrics.misses(), metrics.inUse(),
+                metrics.borrowWait().snapshot());
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.metrics;
+
+
+import java.util.Collections;
+import java.util.List;
+
+public final class ServerMetricsSnapshot {
+    private final long acceptedConnections;
+    private final long activeConnections;
+    private final long bytesReceived;
+    private final long bytesSent;
+    private final List<RequestSnapshot> requests;
+    private final List<PoolSnapshot> pools;
+
+    ServerMetricsSnapshot(final long acceptedConnections, final long activeConnections, final long bytesReceived,
+            final long bytesSent, final List<RequestSnapshot> requests, final List<PoolSnapshot> pools) {
+        this.acceptedConnections = acceptedConnections;
+        this.activeConnections = activeConnections;
+        this.bytesReceived = bytesReceived;
+        this.bytesSent = bytesSent;
+        this.requests = Collections.unmodifiableList(requests);
+        this.pools = Collections.unmodifiableList(pools);
+    }
+
+    public long acceptedConnections() {
+        return acceptedConnections;
+    }
+
+    public long activeConnections() {
+        return activeConnections;
+    }
+
+    public long bytesReceived() {
+        return bytesReceived;
+    }
+
+    public long bytesSent() {
+        return bytesSent;
+    }
+
+    public List<RequestSnapshot> requests() {
+        return requests;
+    }
+
+    public List<PoolSnapshot> pools() {
+        return pools;
+    }
+
+    public static final class RequestSnapshot {
+        private final String route;
+        private final int statusCode;
+        private final HistogramSnapshot total;
+        private final HistogramSnapshot firstByte;
+
+        RequestSnapshot(final String route, final int statusCode, final HistogramSnapshot total,
+                final HistogramSnapshot firstByte) {
+            this.route = route;
+            this.statusCode = statusCode;
+            this.total = total;
+            this.firstByte = firstByte;
+        }
+
+        public String route() {
+            return route;
+        }
+
+        public int statusCode() {
+            return statusCode;
+        }
+
+        public HistogramSnapshot total() {
+            return total;
+        }
+
+        public HistogramSnapshot firstByte() {
+            return firstByte;
+        }
+    }
+
+    public static final class PoolSnapshot {
+        private final String route;
+        private final long borrows;
+        private final long misses;
+        private final long inUse;
+        private final HistogramSnapshot borrowWait;
+
+        PoolSnapshot(final String route, final long borrows, final long misses, final long inUse,
+                final HistogramSnapshot borrowWait) {
+            this.route = route;
+            this.borrows = borrows;
+            this.misses = misses;
+            this.inUse = inUse;
+            this.borrowWait = borrowWait;
+        }
+
+        public String route() {
+            return route;
+        }
+
+        public long borrows() {
+            return borrows;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public long inUse() {
+            return inUse;
+        }
+
+        public HistogramSnapshot borrowWait() {
+            return borrowWait;
+        }
+    }
+}
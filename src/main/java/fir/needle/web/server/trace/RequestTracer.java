@@ -0,0 +1,121 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.trace;
+
+
+import fir.needle.joint.logging.Logger;
+import fir.needle.joint.logging.SystemLogger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class RequestTracer {
+    private final int capacity;
+    private final long slowRequestThresholdNanos;
+    private final Logger logger;
+    private final List<TraceRing> rings = new CopyOnWriteArrayList<>();
+    private final AtomicInteger ringsCount = new AtomicInteger();
+    private final ThreadLocal<TraceRing> threadRing = ThreadLocal.withInitial(this::newRing);
+
+    private RequestTracer(final RequestTracerBuilder builder) {
+        this.capacity = builder.capacity;
+        this.slowRequestThresholdNanos = builder.slowRequestThresholdNanos;
+        this.logger = builder.logger;
+    }
+
+    public static RequestTracerBuilder builder() {
+        return new RequestTracerBuilder();
+    }
+
+    public TraceRing ring() {
+        return threadRing.get();
+    }
+
+    public void markActive(final RequestPhase phase) {
+        threadRing.get().markActive(phase);
+    }
+
+    public void dump(final StringBuilder out) {
+        for (final TraceRing ring : rings) {
+            ring.dump(out);
+        }
+    }
+
+    long slowRequestThresholdNanos() {
+        return slowRequestThresholdNanos;
+    }
+
+    void onSlowRequest(final TraceRing ring, final long requestId) {
+        if (logger.isWarnEnabled()) {
+            final StringBuilder out = new StringBuilder("Slow request ");
+            ring.dumpRequest(requestId, out);
+            logger.warn(out.toString());
+        }
+    }
+
+    private TraceRing newRing() {
+        final TraceRing ring = new TraceRing(this, capacity, ringsCount.getAndIncrement());
+        rings.add(ring);
+        return ring;
+    }
+
+    public static final class RequestTracerBuilder {
+        private int capacity = 4096;
+        private long slowRequestThresholdNanos = Long.MAX_VALUE;
+        private Logger logger;
+
+        private RequestTracerBuilder() {
+
+        }
+
+        public RequestTracerBuilder withCapacity(final int eventsPerThread) {
+            if (eventsPerThread <= 0 || Integer.bitCount(eventsPerThread) != 1) {
+                throw new IllegalArgumentException("Capacity must be a positive power of two!");
+            }
+
+            this.capacity = eventsPerThread;
+            return this;
+        }
+
+        public RequestTracerBuilder withSlowRequestThreshold(final long threshold, final TimeUnit unit) {
+            this.slowRequestThresholdNanos = unit.toNanos(threshold);
+            return this;
+        }
+
+        public RequestTracerBuilder withLogger(final Logger logger) {
+            this.logger = logger;
+            return this;
+        }
+
+        public RequestTracer build() {
+            if (logger == null) {
+                logger = SystemLogger.info();
+            }
+
+            return new RequestTracer(this);
+        }
+    }
+}
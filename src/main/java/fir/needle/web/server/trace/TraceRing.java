@@ -0,0 +1,141 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.trace;
+
+public final class TraceRing {
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+    private static final long NO_REQUEST = -1;
+    private static final int NANOS_IN_MICRO = 1000;
+
+    private final RequestTracer tracer;
+    private final String threadName;
+    private final long idPrefix;
+    private final long[] requestIds;
+    private final long[] timestamps;
+    private final byte[] phases;
+    private final int mask;
+    private long position;
+    private long lastId;
+    private long activeId = NO_REQUEST;
+
+    TraceRing(final RequestTracer tracer, final int capacity, final int index) {
+        this.tracer = tracer;
+        this.threadName = Thread.currentThread().getName();
+        this.idPrefix = (long) index << 40;
+        this.requestIds = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.phases = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public long begin() {
+        activeId = idPrefix | ++lastId;
+        record(activeId, RequestPhase.REQUEST_DECODED);
+        return activeId;
+    }
+
+    public void activate(final long requestId) {
+        activeId = requestId;
+    }
+
+    public void mark(final long requestId, final RequestPhase phase) {
+        record(requestId, phase);
+    }
+
+    public void markActive(final RequestPhase phase) {
+        if (activeId != NO_REQUEST) {
+            record(activeId, phase);
+        }
+    }
+
+    public void end(final long requestId) {
+        final long endTime = record(requestId, RequestPhase.FLUSH_COMPLETED);
+
+        if (activeId == requestId) {
+            activeId = NO_REQUEST;
+        }
+
+        final long startTime = startTimeOf(requestId);
+        if (startTime != 0 && endTime - startTime > tracer.slowRequestThresholdNanos()) {
+            tracer.onSlowRequest(this, requestId);
+        }
+    }
+
+    private long record(final long requestId, final RequestPhase phase) {
+        final long timestamp = System.nanoTime();
+        final int index = (int) (position++ & mask);
+
+        requestIds[index] = requestId;
+        timestamps[index] = timestamp;
+        phases[index] = (byte) phase.ordinal();
+
+        return timestamp;
+    }
+
+    private long startTimeOf(final long requestId) {
+        final long available = Math.min(position, requestIds.length);
+
+        for (long i = 1; i <= available; i++) {
+            final int index = (int) ((position - i) & mask);
+
+            if (requestIds[index] == requestId && phases[index] == RequestPhase.REQUEST_DECODED.ordinal()) {
+                return timestamps[index];
+            }
+        }
+
+        return 0;
+    }
+
+    void dumpRequest(final long requestId, final StringBuilder out) {
+        final long startTime = startTimeOf(requestId);
+        final long available = Math.min(position, requestIds.length);
+
+        out.append("Request #").append(requestId).append(" on ").append(threadName).append(':');
+
+        for (long i = available; i >= 1; i--) {
+            final int index = (int) ((position - i) & mask);
+
+            if (requestIds[index] == requestId) {
+                out.append(' ').append(PHASES[phases[index]]).append(" +")
+                        .append((timestamps[index] - startTime) / NANOS_IN_MICRO).append("us");
+            }
+        }
+
+        out.append('\n');
+    }
+
+    void dump(final StringBuilder out) {
+        final long available = Math.min(position, requestIds.length);
+        long previousId = NO_REQUEST;
+
+        for (long i = available; i >= 1; i--) {
+            final int index = (int) ((position - i) & mask);
+
+            if (requestIds[index] != previousId && phases[index] == RequestPhase.REQUEST_DECODED.ordinal()) {
+                previousId = requestIds[index];
+                dumpRequest(previousId, out);
+            }
+        }
+    }
+}
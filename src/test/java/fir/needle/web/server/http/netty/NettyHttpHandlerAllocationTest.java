@@ -0,0 +1,382 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import fir.needle.joint.colleclions.ConcurrentObjectPool;
+import fir.needle.joint.io.CharAppendable;
+import fir.needle.joint.io.CharArea;
+import fir.needle.joint.logging.SystemLogger;
+import fir.needle.web.server.http.HttpRequestListener;
+import fir.needle.web.server.http.rest.RestListener;
+import fir.needle.web.server.http.rest.RestOutputMessage;
+import fir.needle.web.server.http.rest.RestResponse;
+import fir.needle.web.server.http.rest.RestResponseCache;
+import fir.needle.web.server.http.rest.RestRouteOptions;
+import fir.needle.web.server.http.rest.RestRouter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NettyHttpHandlerAllocationTest {
+    private static final int WARM_UP_REQUESTS = 50_000;
+    private static final int MEASURED_REQUESTS = 10_000;
+    private static final String CONTENT_TYPE = "text/plain";
+    private static final String PONG = "pong";
+    private static final String CONNECTION_CLOSE = "Connection: close";
+    private static final int OVERFLOWING_REQUESTS = 40;
+    private static final int QUEUED_REQUESTS = 32;
+
+    @Test
+    void restResponseChainDoesNotAllocate() {
+        final EmbeddedChannel channel = newChannel(RestRouter.builder()
+                .withLogger(SystemLogger.error())
+                .withPair("/ping", () -> new EchoListener(PONG)));
+        final HttpRequest request = request("/ping");
+
+        try {
+            final String response = exchangeAndRead(channel, request);
+            assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+            assertTrue(response.endsWith("\n\n" + PONG), response);
+            assertFalse(response.contains(CONNECTION_CLOSE), response);
+
+            assertEquals(0, allocatedBytes(channel, request));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    void getWithPathParametersDoesNotAllocate() {
+        final EmbeddedChannel channel = newChannel(RestRouter.builder()
+                .withLogger(SystemLogger.error())
+                .withPair("/items/{id}", () -> new EchoListener(null)));
+        final HttpRequest request = request("/items/12345?verbose=true");
+        request.headers().set(HttpHeaderNames.ACCEPT, CONTENT_TYPE);
+
+        try {
+            final String response = exchangeAndRead(channel, request);
+            assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+            assertTrue(response.endsWith("\n\n12345"), response);
+
+            assertEquals(0, allocatedBytes(channel, request));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrder() {
+        final ArrayDeque<DeferredListener> deferred = new ArrayDeque<>();
+        final EmbeddedChannel channel = newChannel(RestRouter.builder()
+                .withLogger(SystemLogger.error())
+                .withPair("/deferred/{name}", () -> new DeferredListener(deferred)));
+
+        try {
+            send(channel, request("/deferred/first"));
+            send(channel, request("/deferred/second"));
+            channel.pipeline().fireChannelReadComplete();
+
+            assertEquals(1, deferred.size());
+            assertFalse(channel.config().isAutoRead());
+            deferred.poll().respond();
+            assertEquals(1, deferred.size());
+            deferred.poll().respond();
+            assertTrue(channel.config().isAutoRead());
+
+            final String responses = readOutbound(channel);
+            assertTrue(responses.indexOf("first") > 0, responses);
+            assertTrue(responses.indexOf("second") > responses.indexOf("first"), responses);
+            assertFalse(responses.contains(CONNECTION_CLOSE), responses);
+            assertTrue(channel.isOpen());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    void answersQueuedRequestsBeforeClosingAnOverflowingPipeline() {
+        final ArrayDeque<DeferredListener> deferred = new ArrayDeque<>();
+        final EmbeddedChannel channel = newChannel(RestRouter.builder()
+                .withLogger(SystemLogger.error())
+                .withPair("/deferred/{name}", () -> new DeferredListener(deferred)));
+
+        try {
+            for (int i = 0; i < OVERFLOWING_REQUESTS; i++) {
+                send(channel, request("/deferred/r" + i));
+            }
+            channel.pipeline().fireChannelReadComplete();
+
+            int answered = 0;
+            for (DeferredListener crtListener = deferred.poll(); crtListener != null; crtListener = deferred.poll()) {
+                crtListener.respond();
+                answered++;
+            }
+
+            final String responses = readOutbound(channel);
+            assertEquals(1 + QUEUED_REQUESTS, answered);
+            assertTrue(responses.endsWith("\n\nr" + QUEUED_REQUESTS), responses);
+            assertEquals(responses.indexOf(CONNECTION_CLOSE), responses.lastIndexOf(CONNECTION_CLOSE));
+            assertTrue(responses.indexOf(CONNECTION_CLOSE) > responses.indexOf("\n\nr" + (QUEUED_REQUESTS - 1)));
+            assertFalse(channel.isOpen());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    void drainsRemovedRoutesOnlyAfterAsynchronousResponsesAreCommitted() {
+        final ArrayDeque<DeferredListener> deferred = new ArrayDeque<>();
+        final RestRouter.RestRouterBuilder router = RestRouter.builder()
+                .withLogger(SystemLogger.error())
+                .withPair("/deferred/{name}", () -> new DeferredListener(deferred));
+        final EmbeddedChannel channel = newChannel(router);
+
+        try {
+            exchangeAndRead(channel, request("/deferred/first"));
+            final CompletableFuture<Void> drained = router.routeTable().remove("/deferred/{name}");
+            assertFalse(drained.isDone());
+
+            deferred.poll().respond();
+            assertTrue(drained.isDone());
+            assertTrue(readOutbound(channel).endsWith("\n\nfirst"));
+
+            assertTrue(exchangeAndRead(channel, request("/deferred/second")).startsWith("HTTP/1.1 404"));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    void rejectsResponsesKeptAfterAnAsynchronousCommit() {
+        final ArrayDeque<DeferredListener> deferred = new ArrayDeque<>();
+        final EmbeddedChannel channel = newChannel(RestRouter.builder()
+                .withLogger(SystemLogger.error())
+                .withPair("/deferred/{name}", () -> new DeferredListener(deferred)));
+
+        try {
+            exchangeAndRead(channel, request("/deferred/first"));
+            final DeferredListener first = deferred.poll();
+            final RestResponse stale = first.response;
+            first.respond();
+
+            exchangeAndRead(channel, request("/deferred/second"));
+            assertThrows(IllegalStateException.class, () -> stale.success().ok());
+
+            deferred.poll().respond();
+            final String response = readOutbound(channel);
+            assertTrue(response.endsWith("\n\nsecond"), response);
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    void cachedResponsesUseTheConnectionHeaderOfTheCurrentRequest() {
+        final RestRouter.RestRouterBuilder router = RestRouter.builder()
+                .withLogger(SystemLogger.error())
+                .withPair("/cached", () -> new EchoListener(PONG), RestRouteOptions.builder()
+                        .withCache(RestResponseCache.builder()
+                                .withTimeToLive(1, TimeUnit.MINUTES)
+                                .withMaximumSize(1024 * 1024)
+                                .build())
+                        .build());
+        final HttpRequest closing = request("/cached");
+        closing.headers().set(HttpHeaderNames.CONNECTION, "close");
+
+        final EmbeddedChannel first = newChannel(router);
+        try {
+            assertTrue(exchangeAndRead(first, closing).contains(CONNECTION_CLOSE));
+        } finally {
+            first.finishAndReleaseAll();
+        }
+
+        final EmbeddedChannel second = newChannel(router);
+        try {
+            final String replayed = exchangeAndRead(second, request("/cached"));
+            assertFalse(replayed.contains(CONNECTION_CLOSE), replayed);
+            assertTrue(replayed.endsWith("\n\n" + PONG), replayed);
+            assertTrue(second.isOpen());
+        } finally {
+            second.finishAndReleaseAll();
+        }
+    }
+
+    private static EmbeddedChannel newChannel(final RestRouter.RestRouterBuilder router) {
+        return new EmbeddedChannel(new NettyHttpHandler(new ConcurrentObjectPool<HttpRequestListener>(router::build),
+                SystemLogger.error(), null, null, new NettyErrorResponses(ErrorFormat.TEXT, false),
+                new NettyMultipartOptions(0, 0, null), null, true, false, false, null));
+    }
+
+    private static HttpRequest request(final String uri) {
+        final HttpRequest result = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        result.headers().set(HttpHeaderNames.HOST, "localhost");
+        return result;
+    }
+
+    private static long allocatedBytes(final EmbeddedChannel channel, final HttpRequest request) {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            exchange(channel, request);
+        }
+
+        final long baseline = threads.getThreadAllocatedBytes(threadId);
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            exchange(channel, request);
+        }
+        final long after = threads.getThreadAllocatedBytes(threadId);
+
+        channel.checkException();
+        return after - before - (before - baseline);
+    }
+
+    private static void send(final EmbeddedChannel channel, final HttpRequest request) {
+        channel.pipeline().fireChannelRead(request);
+        channel.pipeline().fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+
+    private static void exchange(final EmbeddedChannel channel, final HttpRequest request) {
+        send(channel, request);
+        channel.pipeline().fireChannelReadComplete();
+
+        for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    private static String exchangeAndRead(final EmbeddedChannel channel, final HttpRequest request) {
+        send(channel, request);
+        channel.pipeline().fireChannelReadComplete();
+
+        return readOutbound(channel);
+    }
+
+    private static String readOutbound(final EmbeddedChannel channel) {
+        final StringBuilder result = new StringBuilder();
+        for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+            result.append(((ByteBuf) msg).toString(StandardCharsets.US_ASCII));
+            ReferenceCountUtil.release(msg);
+        }
+
+        return result.toString();
+    }
+
+    private static void writeBody(final RestResponse response, final CharSequence content) {
+        final RestOutputMessage message = response.success().ok();
+        final CharAppendable body = message.body(CONTENT_TYPE, content.length());
+        for (int i = 0; i < content.length(); i++) {
+            body.appendChar(content.charAt(i));
+        }
+
+        message.commit();
+    }
+
+    private abstract static class TestListener implements RestListener {
+        protected RestResponse response;
+
+        @Override
+        public void onRequestStarted(final CharSequence method, final RestResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onBodyPart(final CharArea charArea, final long startIndex, final long length) {
+
+        }
+
+        @Override
+        public void onError(final Throwable exception) {
+
+        }
+    }
+
+    private static final class EchoListener extends TestListener {
+        private final String fixedContent;
+        private final StringBuilder parameter = new StringBuilder();
+
+        private EchoListener(final String fixedContent) {
+            this.fixedContent = fixedContent;
+        }
+
+        @Override
+        public void onParameter(final CharSequence name, final CharSequence value) {
+            if (parameter.length() == 0) {
+                parameter.append(value);
+            }
+        }
+
+        @Override
+        public void onRequestFinished() {
+            writeBody(response, fixedContent != null ? fixedContent : parameter);
+            parameter.setLength(0);
+            response = null;
+        }
+    }
+
+    private static final class DeferredListener extends TestListener {
+        private final ArrayDeque<DeferredListener> deferred;
+        private String name;
+
+        private DeferredListener(final ArrayDeque<DeferredListener> deferred) {
+            this.deferred = deferred;
+        }
+
+        @Override
+        public void onParameter(final CharSequence name, final CharSequence value) {
+            this.name = value.toString();
+        }
+
+        @Override
+        public void onRequestFinished() {
+            deferred.offer(this);
+        }
+
+        private void respond() {
+            final RestResponse crtResponse = response;
+            response = null;
+            writeBody(crtResponse, name);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NettyMultipartParserTest {
+    private static final String BOUNDARY = "XyZ";
+    private static final int FIELD_THRESHOLD = 50;
+    private static final int[] CHUNK_SIZES = {1, 2, 3, 7, 64, 1000, 100_000};
+
+    private final StringBuilder events = new StringBuilder();
+
+    @Test
+    void deliversTheSameEventsForAnyChunking() {
+        final String large = repeat(30_000);
+        final String body = "preamble\r\n--XyZ\r\n" +
+                "Content-Disposition: form-data; name=\"f1\"\r\n\r\nvalue one\r\n--XyZ\r\n" +
+                "Content-Disposition: form-data; name=\"up\"; filename=\"a;b.txt\"\r\n" +
+                "Content-Type: text/plain\r\n\r\n" + large + "\r\n--XyZ\r\n" +
+                "Content-Disposition: form-data; name=\"f2\"\r\n\r\n" + large.substring(0, 100) + "\r\n--XyZ--\r\n";
+        final String expected = "F(f1=value one)S(up,a;b.txt,text/plain)" + large + "E" +
+                "S(f2,null,null)" + large.substring(0, 100) + "E";
+
+        for (final int crtChunkSize : CHUNK_SIZES) {
+            assertEquals(expected, parse(body, crtChunkSize, 0), "chunk size " + crtChunkSize);
+            assertEquals(expected, parse(body, crtChunkSize, 64), "spooled, chunk size " + crtChunkSize);
+            assertEquals(expected, parse(body, crtChunkSize, 1 << 20), "in memory, chunk size " + crtChunkSize);
+        }
+    }
+
+    @Test
+    void reportsTruncatedBodies() {
+        assertEquals("ERR(Multipart body ended before the closing boundary)",
+                parse("--XyZ\r\nContent-Disposition: form-data; name=x\r\n\r\nabc", 5, 0));
+    }
+
+    @Test
+    void readsQuotedParameters() {
+        assertEquals("x;y.png", NettyMultipartParser.parameterOf("form-data; name=\"a\"; filename=\"x;y.png\"",
+                "filename"));
+        assertEquals("say \"hi\"", NettyMultipartParser.parameterOf("form-data; name=\"say \\\"hi\\\"\"", "name"));
+        assertEquals("plain", NettyMultipartParser.parameterOf("form-data; flag; name=plain ; filename=z", "name"));
+        assertEquals("C:\\dir\\f.txt", NettyMultipartParser.parameterOf("form-data; filename=\"C:\\dir\\f.txt\"",
+                "filename"));
+        assertEquals("q;r", NettyMultipartParser.boundaryOf("multipart/form-data; boundary=\"q;r\""));
+        assertNull(NettyMultipartParser.parameterOf("form-data; xname=\"n\"", "name"));
+    }
+
+    private String parse(final String body, final int chunkSize, final int spoolThreshold) {
+        events.setLength(0);
+
+        final NettyMultipartParser parser = new NettyMultipartParser(new RecordingListener(),
+                new NettyMultipartOptions(FIELD_THRESHOLD, spoolThreshold, null));
+        parser.reset(BOUNDARY);
+
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            final ByteBuf chunk = Unpooled.wrappedBuffer(bytes, i, Math.min(chunkSize, bytes.length - i));
+            parser.offer(UnpooledByteBufAllocator.DEFAULT, chunk);
+            assertEquals(0, chunk.readerIndex());
+        }
+
+        parser.finish();
+        parser.release();
+
+        return events.toString();
+    }
+
+    private static String repeat(final int length) {
+        final StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append((char) ('a' + i % 26));
+        }
+
+        return result.toString();
+    }
+
+    private final class RecordingListener implements NettyMultipartParser.Listener {
+
+        @Override
+        public void onField(final CharSequence name, final CharSequence value) {
+            events.append("F(").append(name).append('=').append(value).append(')');
+        }
+
+        @Override
+        public void onPartStarted(final CharSequence name, final CharSequence fileName,
+                final CharSequence contentType) {
+            events.append("S(").append(name).append(',').append(fileName).append(',').append(contentType)
+                    .append(')');
+        }
+
+        @Override
+        public void onPartContent(final ByteBuf content) {
+            events.append(content.toString(content.readerIndex(), content.readableBytes(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onPartFinished() {
+            events.append('E');
+        }
+
+        @Override
+        public void onError(final Throwable exception) {
+            events.append("ERR(").append(exception.getMessage()).append(')');
+        }
+    }
+}
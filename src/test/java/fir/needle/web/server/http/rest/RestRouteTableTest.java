@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RestRouteTableTest {
+    private static final String USERS = "/users/{id}";
+    private static final String USER_PATH = "/users/42";
+
+    private final RestRouteTable table = new RestRouteTable();
+    private final RestPathParameters parameters = new RestPathParameters();
+
+    @Test
+    void addsRoutesAtRuntime() {
+        assertNull(table.tree().find(USER_PATH, parameters));
+
+        table.add(USERS, () -> null);
+        assertNotNull(table.tree().find(USER_PATH, parameters));
+
+        assertThrows(IllegalArgumentException.class, () -> table.add(USERS, () -> null));
+    }
+
+    @Test
+    void replacesRoutesAndDrainsThePreviousOne() {
+        table.add(USERS, () -> null);
+        final RestRoute previous = table.tree().find(USER_PATH, parameters);
+        assertTrue(previous.enter());
+
+        final CompletableFuture<Void> drained = table.replace(USERS, () -> null);
+        final RestRoute replacement = table.tree().find(USER_PATH, parameters);
+
+        assertNotSame(previous, replacement);
+        assertFalse(previous.enter());
+        assertFalse(drained.isDone());
+
+        previous.exit();
+        assertTrue(drained.isDone());
+    }
+
+    @Test
+    void replacesMissingRoutesWithoutDraining() {
+        assertTrue(table.replace(USERS, () -> null).isDone());
+        assertNotNull(table.tree().find(USER_PATH, parameters));
+    }
+
+    @Test
+    void removesRoutesAndDrainsThem() {
+        table.add(USERS, () -> null);
+        final RestRoute removed = table.tree().find(USER_PATH, parameters);
+        assertTrue(removed.enter());
+        assertTrue(removed.enter());
+
+        final CompletableFuture<Void> drained = table.remove(USERS);
+        assertNull(table.tree().find(USER_PATH, parameters));
+
+        removed.exit();
+        assertFalse(drained.isDone());
+        removed.exit();
+        assertTrue(drained.isDone());
+
+        assertThrows(IllegalArgumentException.class, () -> table.remove(USERS));
+    }
+
+    @Test
+    void completesTheDrainOfAnIdleRouteImmediately() {
+        table.add(USERS, () -> null);
+
+        assertTrue(table.remove(USERS).isDone());
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import fir.needle.joint.colleclions.SimpleParametrizedPrefixTree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class RestRouteTreeBenchmark {
+    private static final int[] ROUTE_COUNTS = {10, 100, 1000};
+    private static final int LOOKUPS = 10_000_000;
+    private static final int ROUNDS = 5;
+    private static final String DELIMITER = "/";
+
+    private RestRouteTreeBenchmark() {
+
+    }
+
+    public static void main(final String[] args) {
+        for (final int routes : ROUTE_COUNTS) {
+            final String[] paths = paths(routes);
+            final RestRouteTree tree = new RestRouteTree();
+            final SimpleParametrizedPrefixTree<RestRoute> prefixTree = new SimpleParametrizedPrefixTree<>(DELIMITER);
+
+            for (int i = 0; i < routes; i++) {
+                final String template = template(i);
+                final RestRoute route = new RestRoute(template, () -> null, RestRouteOptions.DEFAULT);
+                tree.insert(template, route);
+                prefixTree.insert(template, route);
+            }
+
+            long bestTree = Long.MAX_VALUE;
+            long bestPrefixTree = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                bestTree = Math.min(bestTree, runTree(tree, paths));
+                bestPrefixTree = Math.min(bestPrefixTree, runPrefixTree(prefixTree, paths));
+            }
+
+            System.out.println(routes + " routes: " + (double) bestTree / LOOKUPS + " ns per lookup, previous tree " +
+                    (double) bestPrefixTree / LOOKUPS + " ns per lookup");
+        }
+    }
+
+    private static String template(final int index) {
+        return index % 2 == 0 ?
+                "/api/v1/resource" + index + "/{id}" :
+                "/api/v1/resource" + index + "/{id}/items/{item}";
+    }
+
+    private static String[] paths(final int routes) {
+        final String[] result = new String[routes];
+
+        for (int i = 0; i < routes; i++) {
+            result[i] = i % 2 == 0 ?
+                    "/api/v1/resource" + i + "/12345" :
+                    "/api/v1/resource" + i + "/12345/items/67890";
+        }
+
+        return result;
+    }
+
+    private static long runTree(final RestRouteTree tree, final String[] paths) {
+        final RestPathParameters parameters = new RestPathParameters();
+        int found = 0;
+
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (tree.find(paths[i % paths.length], parameters) != null) {
+                found++;
+            }
+        }
+        final long elapsed = System.nanoTime() - startTime;
+
+        check(found);
+        return elapsed;
+    }
+
+    private static long runPrefixTree(final SimpleParametrizedPrefixTree<RestRoute> tree, final String[] paths) {
+        final List<SimpleParametrizedPrefixTree.Parameter> parameters = new ArrayList<>();
+        int found = 0;
+
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            parameters.clear();
+            if (tree.find(paths[i % paths.length], parameters) != null) {
+                found++;
+            }
+        }
+        final long elapsed = System.nanoTime() - startTime;
+
+        check(found);
+        return elapsed;
+    }
+
+    private static void check(final int found) {
+        if (found != LOOKUPS) {
+            throw new IllegalStateException("Only " + found + " of " + LOOKUPS + " paths were routed!");
+        }
+    }
+}
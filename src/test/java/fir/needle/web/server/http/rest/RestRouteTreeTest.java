@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.http.rest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RestRouteTreeTest {
+    private final RestRouteTree tree = new RestRouteTree();
+    private final RestPathParameters parameters = new RestPathParameters();
+
+    @Test
+    void prefersStaticSegmentsOverParameters() {
+        final RestRoute byId = insert("/users/{id}");
+        final RestRoute me = insert("/users/me");
+
+        assertSame(me, tree.find("/users/me", parameters));
+        assertEquals(0, parameters.size());
+
+        assertSame(byId, tree.find("/users/mel", parameters));
+        assertEquals("mel", parameter("/users/mel", "id"));
+    }
+
+    @Test
+    void triesRegexParametersBeforePlainOnes() {
+        final RestRoute byName = insert("/items/{name}");
+        final RestRoute byId = insert("/items/{id:[0-9]+}");
+
+        assertSame(byId, tree.find("/items/42", parameters));
+        assertEquals("42", parameter("/items/42", "id"));
+
+        assertSame(byName, tree.find("/items/4x", parameters));
+        assertEquals("4x", parameter("/items/4x", "name"));
+    }
+
+    @Test
+    void matchesTheRestOfThePathWithCatchAll() {
+        final RestRoute files = insert("/files/{*path}");
+
+        assertSame(files, tree.find("/files/a/b/c.txt", parameters));
+        assertEquals("a/b/c.txt", parameter("/files/a/b/c.txt", "path"));
+
+        assertSame(files, tree.find("/files/", parameters));
+        assertEquals("", parameter("/files/", "path"));
+
+        assertNull(tree.find("/file", parameters));
+    }
+
+    @Test
+    void backtracksWhenABranchDoesNotMatch() {
+        final RestRoute parameterThenStatic = insert("/a/{x}/c");
+        final RestRoute staticOnly = insert("/a/b/d");
+        final RestRoute catchAll = insert("/a/{*rest}");
+
+        assertSame(staticOnly, tree.find("/a/b/d", parameters));
+
+        assertSame(parameterThenStatic, tree.find("/a/b/c", parameters));
+        assertEquals(1, parameters.size());
+        assertEquals("b", parameter("/a/b/c", "x"));
+
+        assertSame(catchAll, tree.find("/a/b/e", parameters));
+        assertEquals(1, parameters.size());
+        assertEquals("b/e", parameter("/a/b/e", "rest"));
+    }
+
+    @Test
+    void matchesTheRawPathAndDecodesOnlyParameters() {
+        final RestRoute single = insert("/x/{name}");
+        final RestRoute nested = insert("/x/{first}/{second}");
+
+        assertSame(single, tree.find("/x/a%2Fb", parameters));
+        assertEquals("a/b", parameter("/x/a%2Fb", "name"));
+
+        assertSame(nested, tree.find("/x/caf%C3%A9/%zz", parameters));
+        assertEquals("caf\u00e9", parameter("/x/caf%C3%A9/%zz", "first"));
+        assertEquals("%zz", parameter("/x/caf%C3%A9/%zz", "second"));
+    }
+
+    @Test
+    void rejectsDuplicateAndMalformedTemplates() {
+        insert("/users/{id}");
+
+        assertThrows(IllegalArgumentException.class, () -> insert("/users/{id}"));
+        assertThrows(IllegalArgumentException.class, () -> insert("/users/{id"));
+        assertThrows(IllegalArgumentException.class, () -> insert("/users/{*rest}/more"));
+    }
+
+    private RestRoute insert(final String template) {
+        final RestRoute result = new RestRoute(template, () -> null, RestRouteOptions.DEFAULT);
+        tree.insert(template, result);
+        return result;
+    }
+
+    private String parameter(final CharSequence path, final String name) {
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.name(i).equals(name)) {
+                return parameters.value(i, path, new FlyweightCharSequence()).toString();
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.json;
+
+import fir.needle.joint.io.ByteArea;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonTokenizerTest {
+    private static final String[] VALID_NUMBERS = {
+        "0", "-0", "7", "-12", "10", "0.5", "-3.25", "1e5", "1E+5", "2e-07", "0.0e0", "123456789.000001"
+    };
+    private static final String[] MALFORMED_NUMBERS = {
+        "-", "1-2", "1e", "1e+", "..", "1.", "-.5", "01", "1.e3", "1ee3", "1.2.3", "--1", "+1", "1e5.0", "0x10"
+    };
+
+    private final StringBuilder events = new StringBuilder();
+    private final JsonTokenizer tokenizer = new JsonTokenizer(new RecordingListener());
+
+    @Test
+    void acceptsWellFormedNumbers() {
+        for (final String crtNumber : VALID_NUMBERS) {
+            assertEquals("N(" + crtNumber + ")", tokenize(crtNumber), crtNumber);
+            assertEquals("[N(" + crtNumber + ")N(" + crtNumber + ")]", tokenize("[" + crtNumber + "," + crtNumber +
+                    "]"), crtNumber);
+            assertEquals("{F(a)N(" + crtNumber + ")}", tokenize("{\"a\": " + crtNumber + " }"), crtNumber);
+        }
+    }
+
+    @Test
+    void rejectsMalformedNumbers() {
+        for (final String crtNumber : MALFORMED_NUMBERS) {
+            assertThrows(IllegalArgumentException.class, () -> tokenize(crtNumber));
+            assertThrows(IllegalArgumentException.class, () -> tokenize("[" + crtNumber + "]"));
+        }
+    }
+
+    @Test
+    void acceptsNumbersSplitAcrossFeeds() {
+        events.setLength(0);
+        tokenizer.reset();
+
+        feed("[-1");
+        feed("2.5e");
+        feed("+3]");
+        tokenizer.end();
+
+        assertEquals("[N(-12.5e+3)]", events.toString());
+    }
+
+    private String tokenize(final String json) {
+        events.setLength(0);
+        tokenizer.reset();
+
+        feed(json);
+        tokenizer.end();
+
+        return events.toString();
+    }
+
+    private void feed(final String json) {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        tokenizer.feed(new ByteArrayArea(bytes), 0, bytes.length);
+    }
+
+    private static final class ByteArrayArea implements ByteArea {
+        private final byte[] bytes;
+
+        private ByteArrayArea(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public byte getByte(final long index) {
+            return bytes[(int) index];
+        }
+    }
+
+    private final class RecordingListener implements JsonListener {
+
+        @Override
+        public void onObjectStarted() {
+            events.append('{');
+        }
+
+        @Override
+        public void onObjectFinished() {
+            events.append('}');
+        }
+
+        @Override
+        public void onArrayStarted() {
+            events.append('[');
+        }
+
+        @Override
+        public void onArrayFinished() {
+            events.append(']');
+        }
+
+        @Override
+        public void onFieldName(final CharSequence name) {
+            events.append("F(").append(name).append(')');
+        }
+
+        @Override
+        public void onString(final CharSequence value) {
+            events.append("S(").append(value).append(')');
+        }
+
+        @Override
+        public void onNumber(final CharSequence value) {
+            events.append("N(").append(value).append(')');
+        }
+
+        @Override
+        public void onBoolean(final boolean value) {
+            events.append(value);
+        }
+
+        @Override
+        public void onNull() {
+            events.append("null");
+        }
+    }
+}
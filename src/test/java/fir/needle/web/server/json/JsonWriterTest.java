@@ -0,0 +1,92 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.json;
+
+import fir.needle.joint.io.CharAppendable;
+import fir.needle.joint.io.CharArea;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonWriterTest {
+    private static final double[] DOUBLES = {
+        0.1, -0.5, 1.5, 3.141592653589793, 1e-7, 1.0E-5, 123456.789, 1e21, 1.7976931348623157E308, Double.MIN_VALUE,
+        2.2250738585072014E-308, 9007199254740993.0, 0.3
+    };
+    private static final int RANDOM_DOUBLES = 100_000;
+
+    private final StringBuilder output = new StringBuilder();
+    private final JsonWriter writer = new JsonWriter();
+
+    @Test
+    void writesDoublesThatRoundTrip() {
+        for (final double crtValue : DOUBLES) {
+            assertRoundTrip(crtValue);
+            assertRoundTrip(-crtValue);
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < RANDOM_DOUBLES; i++) {
+            final double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                assertRoundTrip(value);
+            }
+        }
+    }
+
+    @Test
+    void measuresDoublesLikeItWritesThem() {
+        for (final double crtValue : DOUBLES) {
+            assertEquals(write(crtValue).length(), writer.measure().value(crtValue).length());
+        }
+    }
+
+    private void assertRoundTrip(final double value) {
+        final String json = write(value);
+        assertEquals(value, Double.parseDouble(json), json);
+    }
+
+    private String write(final double value) {
+        output.setLength(0);
+        writer.wrap(new StringAppendable()).value(value);
+        return output.toString();
+    }
+
+    private final class StringAppendable implements CharAppendable {
+
+        @Override
+        public void appendChar(final char toAppend) {
+            output.append(toAppend);
+        }
+
+        @Override
+        public void appendArea(final CharArea area, final long startIndex, final long length) {
+            for (long i = startIndex; i < startIndex + length; i++) {
+                output.append(area.getChar(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+public final class LatencyHistogramBenchmark {
+    private static final int RECORDS_PER_THREAD = 20_000_000;
+    private static final int ROUNDS = 5;
+
+    private LatencyHistogramBenchmark() {
+
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                best = Math.min(best, run(threads));
+            }
+
+            System.out.println(threads + " threads: " + (double) best / RECORDS_PER_THREAD + " ns per record");
+        }
+    }
+
+    private static long run(final int threadsCount) throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final CyclicBarrier barrier = new CyclicBarrier(threadsCount + 1);
+        final List<Thread> threads = new ArrayList<>(threadsCount);
+
+        for (int t = 0; t < threadsCount; t++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                        histogram.record(1_000 + (i & 0xFFFF));
+                    }
+                    barrier.await();
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        barrier.await();
+        final long startTime = System.nanoTime();
+        barrier.await();
+        final long elapsed = System.nanoTime() - startTime;
+
+        for (final Thread crtThread : threads) {
+            crtThread.join();
+        }
+
+        return elapsed;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Nikita Vasilev
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fir.needle.web.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    private static final int THREADS = 8;
+    private static final int RECORDS_PER_THREAD = 100_000;
+
+    @Test
+    void mergesStripesRecordedFromSeveralThreads() throws InterruptedException {
+        final LatencyHistogram striped = new LatencyHistogram();
+        final LatencyHistogram single = new LatencyHistogram();
+
+        final List<Thread> threads = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                    striped.record(i * THREADS + offset);
+                }
+            }));
+        }
+
+        for (final Thread crtThread : threads) {
+            crtThread.start();
+        }
+        for (final Thread crtThread : threads) {
+            crtThread.join();
+        }
+
+        for (int i = 0; i < RECORDS_PER_THREAD * THREADS; i++) {
+            single.record(i);
+        }
+
+        assertEquals(single.count(), striped.count());
+        assertEquals(single.sum(), striped.sum());
+        assertEquals(single.max(), striped.max());
+        assertEquals(single.valueAtPercentile(50), striped.valueAtPercentile(50));
+        assertEquals(single.valueAtPercentile(99), striped.valueAtPercentile(99));
+        assertEquals(single.valueAtPercentile(99.9), striped.valueAtPercentile(99.9));
+    }
+
+    @Test
+    void reportsPercentilesWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(0, new LatencyHistogram().valueAtPercentile(50));
+        assertEquals(1000, histogram.valueAtPercentile(100));
+        assertEquals(1000, histogram.max());
+
+        final long median = histogram.valueAtPercentile(50);
+        assertTrue(median >= 500 && median <= 500 + 500 / 16, "median " + median);
+    }
+
+    @Test
+    void clampsNegativeValuesToZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.sum());
+        assertEquals(0, histogram.valueAtPercentile(99));
+    }
+}